@@ -0,0 +1,118 @@
+/**
+ * Middleware de réponse compacte - LogiTrack
+ * - Compression brotli/gzip des réponses JSON de l'API (selon Accept-Encoding), ETag et 304 conservés
+ * - Format colonnes négocié par l'app Android (X-LogiTrack-Format: columns) :
+ *   les tableaux de lignes homogènes deviennent { $cols: [...], $rows: [[...]] }, sans perte,
+ *   et sont redéveloppés en JSON par la couche native avant d'arriver à la page
+ */
+
+const zlib = require('zlib');
+
+const MIN_COMPRESS_SIZE = 1024; // En dessous, l'en-tête coûte plus que le gain
+const COLUMNS_FORMAT = 'columns';
+
+/**
+ * Objet JSON « simple » : ni tableau, ni Date, ni Buffer (tout ce qui a un toJSON
+ * est sérialisé par JSON.stringify lui-même et doit rester tel quel)
+ */
+function isPlainObject(value) {
+  return value !== null && typeof value === 'object' && !Array.isArray(value) && typeof value.toJSON !== 'function';
+}
+
+function sameKeys(item, keys) {
+  const itemKeys = Object.keys(item);
+  return itemKeys.length === keys.length && keys.every(key => Object.prototype.hasOwnProperty.call(item, key));
+}
+
+/**
+ * Convertir récursivement en colonnes les tableaux d'objets simples ayant exactement
+ * les mêmes clés (lignes SQL) ; tout le reste est laissé tel quel, la conversion est sans perte
+ */
+function toColumns(value) {
+  if (Array.isArray(value)) {
+    const items = value.map(toColumns);
+    if (items.length < 2 || !items.every(isPlainObject)) return items;
+
+    const cols = Object.keys(items[0]);
+    if (!items.every(item => sameKeys(item, cols))) return items;
+
+    const rows = items.map(item => cols.map(key => item[key]));
+    return { $cols: cols, $rows: rows };
+  }
+
+  if (isPlainObject(value)) {
+    const out = {};
+    for (const key of Object.keys(value)) {
+      out[key] = toColumns(value[key]);
+    }
+    return out;
+  }
+
+  return value;
+}
+
+function pickEncoding(acceptEncoding) {
+  if (!acceptEncoding) return null;
+  if (/\bbr\b/.test(acceptEncoding)) return 'br';
+  if (/\bgzip\b/.test(acceptEncoding)) return 'gzip';
+  return null;
+}
+
+// Compression asynchrone (pool de threads libuv) : la boucle d'événements n'est pas bloquée
+function compress(buffer, encoding, callback) {
+  if (encoding === 'br') {
+    return zlib.brotliCompress(buffer, {
+      params: { [zlib.constants.BROTLI_PARAM_QUALITY]: 5 }
+    }, callback);
+  }
+  return zlib.gzip(buffer, { level: 6 }, callback);
+}
+
+const compactResponse = (req, res, next) => {
+  const originalJson = res.json.bind(res);
+
+  res.json = (body) => {
+    const wantsColumns = req.get('X-LogiTrack-Format') === COLUMNS_FORMAT;
+    const payload = wantsColumns ? toColumns(body) : body;
+    const raw = Buffer.from(JSON.stringify(payload), 'utf8');
+    const encoding = pickEncoding(req.get('Accept-Encoding'));
+
+    res.vary('Accept-Encoding');
+    if (wantsColumns) {
+      res.vary('X-LogiTrack-Format');
+      res.set('X-LogiTrack-Format', COLUMNS_FORMAT);
+    }
+
+    if (!encoding || raw.length < MIN_COMPRESS_SIZE) {
+      if (!wantsColumns) return originalJson(body);
+      res.type('application/json');
+      return res.send(raw);
+    }
+
+    // ETag calculé sur le corps non compressé, comme res.send : les navigateurs gardent leurs 304
+    const generateETag = req.app.get('etag fn');
+    if (generateETag && !res.get('ETag')) res.set('ETag', generateETag(raw, 'utf8'));
+    if (req.fresh) return res.status(304).end();
+
+    compress(raw, encoding, (error, compressed) => {
+      if (res.headersSent) return;
+      if (error) {
+        console.error('Erreur compression réponse:', error);
+        res.type('application/json');
+        return res.send(raw);
+      }
+      res.set({
+        'Content-Type': 'application/json; charset=utf-8',
+        'Content-Encoding': encoding,
+        'Content-Length': compressed.length,
+        'X-LogiTrack-Raw-Length': raw.length
+      });
+      res.end(compressed);
+    });
+    return res;
+  };
+
+  next();
+};
+
+module.exports = { compactResponse, toColumns };
@@ -12,6 +12,10 @@ const { logAudit } = require('../utils/audit');
 const { authenticateToken, signToken } = require('../middleware/auth');
 
 const JWT_EXPIRES_IN = process.env.JWT_EXPIRES_IN || '24h';
+// Durée maximale d'une session renouvelée sans nouvelle connexion (en secondes, 7 jours par défaut)
+const SESSION_MAX_AGE = (parseInt(process.env.SESSION_MAX_AGE_DAYS, 10) || 7) * 24 * 3600;
+
+const nowSeconds = () => Math.floor(Date.now() / 1000);
 
 // Validation login
 const loginValidation = [
@@ -76,7 +80,8 @@ router.post('/login', loginValidation, async (req, res) => {
         username: user.username,
         role: user.role,
         nom: user.nom,
-        prenom: user.prenom
+        prenom: user.prenom,
+        auth_time: nowSeconds()
       },
       { expiresIn: JWT_EXPIRES_IN }
     );
@@ -141,7 +146,8 @@ router.post('/login-code', [
         prenom: operateur.prenom,
         poste: operateur.poste,
         role: operateur.is_admin ? 'admin' : 'operateur',
-        is_admin: operateur.is_admin || false
+        is_admin: operateur.is_admin || false,
+        auth_time: nowSeconds()
       },
       { expiresIn: JWT_EXPIRES_IN }
     );
@@ -202,6 +208,61 @@ router.get('/me', authenticateToken, async (req, res) => {
   }
 });
 
+/**
+ * POST /api/auth/refresh - Nouveau token avant expiration (sessions persistantes des tablettes)
+ * Le compte est revérifié ; l'ancien token reste valide jusqu'à sa propre expiration,
+ * les requêtes en cours ne sont donc pas interrompues pendant la rotation
+ * auth_time (heure de la dernière vraie connexion) est conservé : au-delà de SESSION_MAX_AGE, reconnexion obligatoire
+ */
+router.post('/refresh', authenticateToken, async (req, res) => {
+  try {
+    // Tokens émis avant auth_time : la session compte à partir de leur émission
+    const authTime = req.user.auth_time || req.user.iat;
+    if (!authTime || nowSeconds() - authTime > SESSION_MAX_AGE) {
+      return res.status(401).json({ error: 'Session trop ancienne, reconnexion requise', code: 'SESSION_TOO_OLD' });
+    }
+
+    let payload;
+    if (req.user.userId) {
+      const [users] = await pool.query(
+        'SELECT id, username, nom, prenom, role, actif FROM users WHERE id = ?',
+        [req.user.userId]
+      );
+      if (users.length === 0 || !users[0].actif) {
+        return res.status(401).json({ error: 'Compte désactivé', code: 'ACCOUNT_DISABLED' });
+      }
+      const user = users[0];
+      payload = { userId: user.id, username: user.username, role: user.role, nom: user.nom, prenom: user.prenom, auth_time: authTime };
+    } else if (req.user.operateurId) {
+      const [operateurs] = await pool.query(
+        'SELECT id, nom, prenom, poste, is_admin FROM operateurs WHERE id = ? AND actif = 1',
+        [req.user.operateurId]
+      );
+      if (operateurs.length === 0) {
+        return res.status(401).json({ error: 'Compte désactivé', code: 'ACCOUNT_DISABLED' });
+      }
+      const op = operateurs[0];
+      payload = {
+        operateurId: op.id,
+        nom: op.nom,
+        prenom: op.prenom,
+        poste: op.poste,
+        role: op.is_admin ? 'admin' : 'operateur',
+        is_admin: op.is_admin || false,
+        auth_time: authTime
+      };
+    } else {
+      return res.status(400).json({ error: 'Token invalide' });
+    }
+
+    const token = signToken(payload, { expiresIn: JWT_EXPIRES_IN });
+    res.json({ token });
+  } catch (error) {
+    console.error('Erreur POST /auth/refresh:', error);
+    res.status(500).json({ error: 'Erreur lors du renouvellement de session' });
+  }
+});
+
 /**
  * POST /api/auth/logout - Déconnexion (côté client principalement)
  */
@@ -7,6 +7,7 @@ const express = require('express');
 const router = express.Router();
 const pool = require('../config/database');
 const { authenticateToken } = require('../middleware/auth');
+const notificationStream = require('../utils/notificationStream');
 
 router.use(authenticateToken);
 
@@ -350,6 +351,9 @@ router.post('/valider-session/:sessionId', async (req, res) => {
       WHERE id = ?
     `, [sessionId]);
 
+    // Nouvelle échéance → les tablettes en arrière-plan reprogramment leur rappel
+    notificationStream.publishChecklistEcheances();
+
     res.json({ success: true, message: 'Checklist périodique validée' });
   } catch (error) {
     console.error('Erreur validation session:', error);
@@ -7,6 +7,19 @@ const express = require('express');
 const router = express.Router();
 const pool = require('../config/database');
 const { authenticateToken, requireAdmin } = require('../middleware/auth');
+const translationBundles = require('../utils/translationBundles');
+
+/**
+ * Recharger les bundles après une écriture : un échec est journalisé sans changer la réponse,
+ * la modification est déjà enregistrée en base
+ */
+async function refreshBundles(codes) {
+  try {
+    await translationBundles.invalidate(codes);
+  } catch (error) {
+    console.error('Erreur mise à jour des bundles de traductions:', error);
+  }
+}
 
 // ============================================================
 // GET /api/langues - Liste des langues (public)
@@ -40,13 +53,36 @@ router.get('/traductions/:code', async (req, res) => {
       translations[t.cle] = t.valeur;
     });
 
-    res.json({ langue: code, traductions: translations, details: traductions });
+    res.json({
+      langue: code,
+      version: translationBundles.computeVersion(translations),
+      traductions: translations,
+      details: traductions
+    });
   } catch (error) {
     console.error('Erreur récupération traductions:', error);
     res.status(500).json({ message: 'Erreur serveur' });
   }
 });
 
+// ============================================================
+// GET /api/langues/bundle/:code?since=<version> - Bundle versionné (cache de l'app Android)
+// Renvoie seulement les clés modifiées/supprimées si `since` est une version connue
+// ============================================================
+router.get('/bundle/:code', async (req, res) => {
+  try {
+    const bundle = await translationBundles.getBundleSince(req.params.code, req.query.since);
+    if (!bundle) {
+      return res.status(404).json({ message: 'Langue inconnue' });
+    }
+    res.set('ETag', `"${bundle.version}"`);
+    res.json(bundle);
+  } catch (error) {
+    console.error('Erreur récupération bundle traductions:', error);
+    res.status(500).json({ message: 'Erreur serveur' });
+  }
+});
+
 // ============================================================
 // GET /api/langues/traductions-all - Toutes les traductions groupées
 // ============================================================
@@ -143,6 +179,7 @@ router.put('/traduction', authenticateToken, requireAdmin, async (req, res) => {
        ON DUPLICATE KEY UPDATE valeur = ?`,
       [cle, langue_code, valeur, valeur]
     );
+    await refreshBundles([langue_code]);
 
     res.json({ message: 'Traduction mise à jour' });
   } catch (error) {
@@ -170,6 +207,7 @@ router.post('/traduction', authenticateToken, requireAdmin, async (req, res) =>
         [cle, langueCode, valeur, categorie || 'general', valeur, categorie || 'general']
       );
     }
+    await refreshBundles(Object.keys(traductions));
 
     res.json({ message: 'Traduction ajoutée avec succès' });
   } catch (error) {
@@ -185,6 +223,7 @@ router.delete('/traduction/:cle', authenticateToken, requireAdmin, async (req, r
   try {
     const { cle } = req.params;
     await pool.query('DELETE FROM traductions WHERE cle = ?', [cle]);
+    await refreshBundles();
     res.json({ message: 'Traduction supprimée' });
   } catch (error) {
     console.error('Erreur suppression traduction:', error);
@@ -5,6 +5,7 @@
 const express = require('express');
 const router = express.Router();
 const pool = require('../config/database');
+const notificationStream = require('../utils/notificationStream');
 
 // GET /api/notifications - Récupérer les notifications (les 50 plus récentes)
 router.get('/', async (req, res) => {
@@ -29,6 +30,11 @@ router.get('/', async (req, res) => {
   }
 });
 
+// GET /api/notifications/stream - Flux SSE (app Android en arrière-plan, sans polling)
+router.get('/stream', (req, res) => {
+  notificationStream.addClient(req, res);
+});
+
 // PUT /api/notifications/:id/lu - Marquer une notification comme lue
 router.put('/:id/lu', async (req, res) => {
   try {
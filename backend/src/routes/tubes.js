@@ -10,6 +10,8 @@ const fs = require('fs');
 const path = require('path');
 const { uploadTubeEtapePhotos, tubesUploadsDir } = require('../config/upload');
 const { logAudit } = require('../utils/audit');
+const notificationStream = require('../utils/notificationStream');
+const statsCache = require('../utils/statsCache');
 
 // ============================================
 // Définition des 12 étapes de production
@@ -62,32 +64,38 @@ router.get('/diametres', (req, res) => {
 // ============================================
 router.get('/stats', async (req, res) => {
   try {
-    const [stats] = await pool.query(`
-      SELECT 
-        COUNT(*) as total,
-        SUM(CASE WHEN statut = 'en_production' THEN 1 ELSE 0 END) as en_production,
-        SUM(CASE WHEN statut = 'termine' THEN 1 ELSE 0 END) as termines,
-        SUM(CASE WHEN statut = 'en_attente' THEN 1 ELSE 0 END) as en_attente,
-        SUM(CASE WHEN statut = 'rebut' THEN 1 ELSE 0 END) as rebuts,
-        SUM(CASE WHEN statut = 'termine' AND decision = 'en_attente' THEN 1 ELSE 0 END) as decision_en_attente,
-        SUM(CASE WHEN decision = 'certifie_api' THEN 1 ELSE 0 END) as certifie_api,
-        SUM(CASE WHEN decision = 'certifie_hydraulique' THEN 1 ELSE 0 END) as certifie_hydraulique,
-        SUM(CASE WHEN decision = 'declasse' THEN 1 ELSE 0 END) as declasse
-      FROM tubes
-    `);
-    
-    const [nc] = await pool.query(`
-      SELECT COUNT(DISTINCT tube_id) as non_conformes
-      FROM tube_etapes WHERE statut = 'non_conforme'
-    `);
-
-    res.json({ ...stats[0], non_conformes: nc[0].non_conformes });
+    const { revision, data } = await statsCache.cached('tubes', computeTubeStats);
+    res.set('X-LogiTrack-Stats-Revision', revision);
+    res.json(data);
   } catch (error) {
     console.error('Erreur GET /tubes/stats:', error);
     res.status(500).json({ error: 'Erreur stats tubes' });
   }
 });
 
+async function computeTubeStats() {
+  const [stats] = await pool.query(`
+    SELECT 
+      COUNT(*) as total,
+      SUM(CASE WHEN statut = 'en_production' THEN 1 ELSE 0 END) as en_production,
+      SUM(CASE WHEN statut = 'termine' THEN 1 ELSE 0 END) as termines,
+      SUM(CASE WHEN statut = 'en_attente' THEN 1 ELSE 0 END) as en_attente,
+      SUM(CASE WHEN statut = 'rebut' THEN 1 ELSE 0 END) as rebuts,
+      SUM(CASE WHEN statut = 'termine' AND decision = 'en_attente' THEN 1 ELSE 0 END) as decision_en_attente,
+      SUM(CASE WHEN decision = 'certifie_api' THEN 1 ELSE 0 END) as certifie_api,
+      SUM(CASE WHEN decision = 'certifie_hydraulique' THEN 1 ELSE 0 END) as certifie_hydraulique,
+      SUM(CASE WHEN decision = 'declasse' THEN 1 ELSE 0 END) as declasse
+    FROM tubes
+  `);
+
+  const [nc] = await pool.query(`
+    SELECT COUNT(DISTINCT tube_id) as non_conformes
+    FROM tube_etapes WHERE statut = 'non_conforme'
+  `);
+
+  return { ...stats[0], non_conformes: nc[0].non_conformes };
+}
+
 // ============================================
 // GET /api/tubes/prochain-numero - Prochain numéro
 // ============================================
@@ -682,20 +690,22 @@ router.put('/:id/decision', async (req, res) => {
     }
 
     // Émettre via Socket.io à tous les clients connectés
+    const notifPayload = {
+      type: 'decision',
+      titre: notifTitre,
+      message: notifMessage,
+      tube_id: parseInt(id),
+      tube_numero: updatedTube[0].numero,
+      decision,
+      created_by: decision_par,
+      created_at: new Date().toISOString()
+    };
     const io = req.app.get('io');
     if (io) {
-      io.emit('notification', {
-        type: 'decision',
-        titre: notifTitre,
-        message: notifMessage,
-        tube_id: parseInt(id),
-        tube_numero: updatedTube[0].numero,
-        decision,
-        created_by: decision_par,
-        created_at: new Date().toISOString()
-      });
+      io.emit('notification', notifPayload);
       console.log(`🔔 Notification émise: ${notifTitre}`);
     }
+    notificationStream.publish('notification', notifPayload);
 
     // Audit trail - décision finale
     logAudit({ action: 'DECISION', entite: 'tube', entiteId: id, req, details: { numero: updatedTube[0].numero, decision, commentaire, decision_par } });
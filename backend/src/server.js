@@ -27,6 +27,9 @@ const auditRoutes = require('./routes/audit');
 
 // Import du middleware d'authentification
 const { authenticateToken } = require('./middleware/auth');
+const { compactResponse } = require('./middleware/compactResponse');
+const notificationStream = require('./utils/notificationStream');
+const statsCache = require('./utils/statsCache');
 
 const path = require('path');
 const PORT = parseInt(process.env.PORT || '3002', 10);
@@ -90,12 +93,17 @@ app.use(cors({
 app.use(express.json({ limit: '10mb' }));
 app.use(express.urlencoded({ extended: true }));
 
+// Réponses JSON compressées (brotli/gzip) + format colonnes pour l'app Android
+app.use('/api/', compactResponse);
+
 // Rate limiting global
 const apiLimiter = rateLimit({
   windowMs: 15 * 60 * 1000, // 15 min
   max: parseInt(process.env.RATE_LIMIT_API || '300'),
   standardHeaders: true,
   legacyHeaders: false,
+  // Le health check léger des tablettes en reconnexion ne consomme pas le quota API
+  skip: (req) => req.path === '/health',
   message: { error: 'Trop de requêtes, réessayez dans quelques minutes' }
 });
 
@@ -105,6 +113,8 @@ const authLimiter = rateLimit({
   max: parseInt(process.env.RATE_LIMIT_AUTH || '20'),
   standardHeaders: true,
   legacyHeaders: false,
+  // Le renouvellement exige déjà un token valide : il ne doit pas bloquer les vraies connexions
+  skip: (req) => req.path === '/refresh',
   message: { error: 'Trop de tentatives de connexion, réessayez dans 15 minutes' }
 });
 
@@ -147,14 +157,14 @@ app.get('/api/health', async (req, res) => {
 app.use('/api/auth', authRoutes);
 
 // Routes API protégées par authentification
-app.use('/api/tubes', authenticateToken, tubesRoutes);
+app.use('/api/tubes', statsCache.trackWrites, authenticateToken, tubesRoutes);
 app.use('/api/etapes', authenticateToken, etapesRoutes);
 app.use('/api/comptes', comptesRoutes); // Gestion des comptes (auth interne)
-app.use('/api/bobines', bobinesRoutes); // Gestion des bobines
+app.use('/api/bobines', statsCache.trackWrites, bobinesRoutes); // Gestion des bobines
 app.use('/api/parametres', parametresRoutes); // Paramètres de production
 app.use('/api/projet-parametres', projetParametresRoutes); // Paramètres du projet
 app.use('/api/langues', languesRoutes); // Gestion des langues & traductions
-app.use('/api/coulees', couleesRoutes); // Gestion des coulées (Heats)
+app.use('/api/coulees', statsCache.trackWrites, couleesRoutes); // Gestion des coulées (Heats)
 app.use('/api/checklist', authenticateToken, checklistRoutes); // Checklist Machine
 app.use('/api/checklist-periodique', checklistPeriodiqueRoutes); // Checklists périodiques
 app.use('/api/dashboard', authenticateToken, dashboardRoutes); // Dashboard stats
@@ -204,6 +214,11 @@ app.get('/api/discover', (req, res) => {
   });
 });
 
+// Statistiques modifiées : les dashboards en affichage mural se rafraîchissent (regroupé sur 2 s)
+statsCache.onChange((revision) => {
+  io.emit('stats_changed', { revision });
+});
+
 // Socket.io - Gestion des connexions temps réel
 io.on('connection', (socket) => {
   console.log(`🔌 Client connecté: ${socket.id}`);
@@ -228,9 +243,16 @@ io.on('connection', (socket) => {
   });
   
   // Alerte temps réel (préparation pour alertes critiques)
+  // Émetteur non authentifié : seuls le message et le type sont relayés (jamais de route/URL)
   socket.on('alert', (data) => {
-    io.emit('new_alert', data);
-    console.log(`🚨 Alerte émise: ${data.message}`);
+    if (!data || typeof data.message !== 'string') return;
+    const alert = {
+      message: data.message.slice(0, 500),
+      type: typeof data.type === 'string' ? data.type.slice(0, 50) : 'info'
+    };
+    io.emit('new_alert', alert);
+    notificationStream.publish('new_alert', alert);
+    console.log(`🚨 Alerte émise: ${alert.message}`);
   });
   
   socket.on('disconnect', () => {
@@ -0,0 +1,105 @@
+/**
+ * Flux de notifications (Server-Sent Events) - LogiTrack
+ * Connexion unique et légère utilisée par l'app Android en arrière-plan
+ * (new_alert, notification, échéances des checklists périodiques)
+ */
+
+const pool = require('../config/database');
+
+const HEARTBEAT_INTERVAL = 45000; // 45 s — garde la connexion ouverte sans réveiller inutilement
+const clients = new Set();
+let heartbeatTimer = null;
+
+function writeEvent(res, event, data) {
+  res.write(`event: ${event}\ndata: ${JSON.stringify(data)}\n\n`);
+}
+
+function startHeartbeat() {
+  if (heartbeatTimer) return;
+  heartbeatTimer = setInterval(() => {
+    for (const res of clients) {
+      res.write(': ping\n\n');
+    }
+  }, HEARTBEAT_INTERVAL);
+  heartbeatTimer.unref();
+}
+
+function stopHeartbeatIfIdle() {
+  if (clients.size === 0 && heartbeatTimer) {
+    clearInterval(heartbeatTimer);
+    heartbeatTimer = null;
+  }
+}
+
+/**
+ * Échéances des checklists périodiques (dernière session validée par type)
+ * Le client programme lui-même son rappel : aucun polling nécessaire
+ */
+async function loadChecklistEcheances() {
+  const [rows] = await pool.query(`
+    SELECT t.code, t.nom, MAX(s.date_expiration) AS date_expiration
+    FROM checklist_periodique_types t
+    LEFT JOIN checklist_periodique_sessions s ON s.type_id = t.id AND s.statut = 'validee'
+    WHERE t.actif = true
+    GROUP BY t.id, t.code, t.nom
+  `);
+  return rows.map(r => ({
+    code: r.code,
+    nom: r.nom,
+    date_expiration: r.date_expiration ? new Date(r.date_expiration).toISOString() : null
+  }));
+}
+
+/**
+ * Enregistrer un client SSE (la réponse reste ouverte)
+ * @param {Object} req - Express request
+ * @param {Object} res - Express response
+ */
+async function addClient(req, res) {
+  res.writeHead(200, {
+    'Content-Type': 'text/event-stream',
+    'Cache-Control': 'no-cache, no-transform',
+    'Connection': 'keep-alive',
+    'X-Accel-Buffering': 'no'
+  });
+  res.write('retry: 10000\n\n');
+
+  clients.add(res);
+  startHeartbeat();
+
+  req.on('close', () => {
+    clients.delete(res);
+    stopHeartbeatIfIdle();
+  });
+
+  try {
+    writeEvent(res, 'checklist_echeances', await loadChecklistEcheances());
+  } catch (error) {
+    console.error('⚠️ Erreur échéances checklist (stream):', error.message);
+  }
+}
+
+/**
+ * Diffuser un événement à tous les clients SSE connectés
+ * @param {string} event - Nom de l'événement (new_alert, notification, checklist_echeances)
+ * @param {Object} data - Charge utile JSON
+ */
+function publish(event, data) {
+  for (const res of clients) {
+    writeEvent(res, event, data);
+  }
+}
+
+/**
+ * Republier les échéances après la validation d'une checklist
+ */
+async function publishChecklistEcheances() {
+  if (clients.size === 0) return;
+  try {
+    publish('checklist_echeances', await loadChecklistEcheances());
+  } catch (error) {
+    console.error('⚠️ Erreur échéances checklist (stream):', error.message);
+  }
+}
+
+module.exports = { addClient, publish, publishChecklistEcheances };
@@ -0,0 +1,78 @@
+/**
+ * Cache des statistiques agrégées - LogiTrack
+ * Les requêtes d'agrégation (dashboard, tubes) ne sont rejouées qu'après une écriture
+ * réussie sur les données comptées ou au changement de jour. Les tablettes d'affichage comparent
+ * seulement la révision (aucune requête SQL) avant de redemander les chiffres.
+ */
+
+const MAX_AGE = 5 * 60 * 1000;    // recalcul de sécurité (écritures hors API : scripts, migrations)
+const BROADCAST_DELAY = 2000;     // regroupe les écritures en rafale avant de prévenir les clients
+
+const bootId = Date.now().toString(36);   // une nouvelle révision à chaque démarrage
+let counter = 0;
+let broadcastTimer = null;
+const listeners = [];
+const cache = new Map();                  // clé -> { revision, computedAt, promise }
+
+function today() {
+  const d = new Date();
+  return `${d.getFullYear()}${String(d.getMonth() + 1).padStart(2, '0')}${String(d.getDate()).padStart(2, '0')}`;
+}
+
+/**
+ * Révision courante : change à chaque écriture, à chaque démarrage et à minuit (production du jour)
+ */
+function getRevision() {
+  return `${bootId}.${counter}.${today()}`;
+}
+
+function bump() {
+  counter++;
+  if (broadcastTimer) return;
+  broadcastTimer = setTimeout(() => {
+    broadcastTimer = null;
+    const revision = getRevision();
+    listeners.forEach(listener => listener(revision));
+  }, BROADCAST_DELAY);
+  broadcastTimer.unref();
+}
+
+function onChange(listener) {
+  listeners.push(listener);
+}
+
+/**
+ * Middleware : une écriture réussie (POST/PUT/PATCH/DELETE) invalide les statistiques
+ * Monté uniquement sur les routeurs des données comptées (tubes, bobines, coulées) :
+ * notifications lues, préférences ou brouillons de checklist ne changent aucun chiffre
+ */
+function trackWrites(req, res, next) {
+  if (req.method !== 'GET' && req.method !== 'HEAD' && req.method !== 'OPTIONS') {
+    res.on('finish', () => {
+      if (res.statusCode < 400) bump();
+    });
+  }
+  next();
+}
+
+/**
+ * Résultat de `compute` partagé entre tous les clients tant que la révision ne change pas
+ */
+async function cached(key, compute) {
+  const revision = getRevision();
+  const entry = cache.get(key);
+  if (entry && entry.revision === revision && Date.now() - entry.computedAt < MAX_AGE) {
+    return { revision, data: await entry.promise };
+  }
+
+  const promise = compute();
+  cache.set(key, { revision, computedAt: Date.now(), promise });
+  try {
+    return { revision, data: await promise };
+  } catch (error) {
+    if (cache.get(key)?.promise === promise) cache.delete(key);
+    throw error;
+  }
+}
+
+module.exports = { getRevision, trackWrites, onChange, cached };
@@ -0,0 +1,137 @@
+/**
+ * Bundles de traductions versionnés - LogiTrack
+ * Chaque langue a une version (hash du contenu) ; les clients qui ont déjà
+ * une version récente ne reçoivent que les clés modifiées ou supprimées depuis
+ */
+
+const crypto = require('crypto');
+const pool = require('../config/database');
+
+const MAX_HISTORY = 50; // changements gardés par langue pour calculer les deltas
+const MAX_AGE = 5 * 60 * 1000; // relecture de sécurité (modifications hors API : scripts, migrations)
+
+const bundles = new Map();  // code -> { version, traductions, loadedAt }
+const history = new Map();  // code -> [{ from, to, changes, removed }]
+let knownCodes = null;      // { codes: Set, loadedAt } - langues de la table `langues`
+
+function computeVersion(traductions) {
+  const hash = crypto.createHash('sha1');
+  for (const cle of Object.keys(traductions).sort()) {
+    hash.update(`${cle}\u0000${traductions[cle] ?? ''}\u0001`);
+  }
+  return hash.digest('hex').slice(0, 16);
+}
+
+async function loadFromDatabase(code) {
+  const [rows] = await pool.query(
+    'SELECT cle, valeur FROM traductions WHERE langue_code = ? ORDER BY cle',
+    [code]
+  );
+  const traductions = {};
+  rows.forEach(r => {
+    traductions[r.cle] = r.valeur;
+  });
+  return { version: computeVersion(traductions), traductions, loadedAt: Date.now() };
+}
+
+/**
+ * La route bundle est publique : seuls les codes de la table `langues` sont servis,
+ * sans requête SQL ni entrée en cache pour un code inconnu
+ */
+async function isKnownLanguage(code) {
+  if (!knownCodes || Date.now() - knownCodes.loadedAt >= MAX_AGE) {
+    const [rows] = await pool.query('SELECT code FROM langues');
+    knownCodes = { codes: new Set(rows.map(r => r.code)), loadedAt: Date.now() };
+  }
+  return knownCodes.codes.has(code);
+}
+
+async function getBundle(code) {
+  const bundle = bundles.get(code);
+  if (!bundle || Date.now() - bundle.loadedAt >= MAX_AGE) {
+    await refresh(code);
+  }
+  return bundles.get(code);
+}
+
+/**
+ * Réponse pour un client qui possède déjà la version `since`
+ * - même version : aucun changement
+ * - version connue dans l'historique : delta (changes + removed)
+ * - sinon : bundle complet
+ * null si la langue n'existe pas
+ */
+async function getBundleSince(code, since) {
+  if (!(await isKnownLanguage(code))) return null;
+  const bundle = await getBundle(code);
+  if (since && since === bundle.version) {
+    return { langue: code, version: bundle.version, full: false, changes: {}, removed: [] };
+  }
+
+  const entries = history.get(code) || [];
+  const start = since ? entries.findIndex(e => e.from === since) : -1;
+  if (start === -1) {
+    return { langue: code, version: bundle.version, full: true, traductions: bundle.traductions };
+  }
+
+  const changes = {};
+  const removed = new Set();
+  for (const entry of entries.slice(start)) {
+    for (const [cle, valeur] of Object.entries(entry.changes)) {
+      changes[cle] = valeur;
+      removed.delete(cle);
+    }
+    for (const cle of entry.removed) {
+      delete changes[cle];
+      removed.add(cle);
+    }
+  }
+  return { langue: code, version: bundle.version, full: false, changes, removed: [...removed] };
+}
+
+/**
+ * Relit une langue et enregistre la différence avec la version précédente dans l'historique
+ */
+async function refresh(code) {
+  const previous = bundles.get(code);
+  const next = await loadFromDatabase(code);
+  bundles.set(code, next);
+  if (!previous || previous.version === next.version) return;
+
+  const changes = {};
+  const removed = [];
+  for (const [cle, valeur] of Object.entries(next.traductions)) {
+    if (previous.traductions[cle] !== valeur) changes[cle] = valeur;
+  }
+  for (const cle of Object.keys(previous.traductions)) {
+    if (!(cle in next.traductions)) removed.push(cle);
+  }
+
+  const entries = history.get(code) || [];
+  entries.push({ from: previous.version, to: next.version, changes, removed });
+  if (entries.length > MAX_HISTORY) entries.shift();
+  history.set(code, entries);
+}
+
+/**
+ * À appeler après toute modification des traductions : recharge les langues concernées
+ * (toutes si `codes` est omis)
+ */
+async function invalidate(codes) {
+  knownCodes = null;
+  const targets = codes || [...bundles.keys()];
+  let failure = null;
+  for (const code of targets) {
+    try {
+      await refresh(code);
+    } catch (error) {
+      // Relecture impossible : copie marquée périmée, la prochaine lecture réessaie
+      const bundle = bundles.get(code);
+      if (bundle) bundle.loadedAt = 0;
+      failure = failure || error;
+    }
+  }
+  if (failure) throw failure;
+}
+
+module.exports = { getBundle, getBundleSince, invalidate, computeVersion };
@@ -1,12 +1,33 @@
-import { createContext, useContext, useState, useEffect } from 'react';
+import { createContext, useContext, useState, useEffect, useRef } from 'react';
 import api from '../services/api';
 
 const AuthContext = createContext(null);
 
+// Session gardée par l'app Android (Keystore) : restaurée avant la première requête,
+// même si le localStorage de la WebView a été perdu (crash du moteur de rendu, reconfiguration)
+function restoreNativeSession() {
+  try {
+    const raw = window.LogiTrackBridge?.getSession?.();
+    const session = raw ? JSON.parse(raw) : null;
+    if (!session?.token) return null;
+    localStorage.setItem('logitrack_token', session.token);
+    return session;
+  } catch {
+    return null;
+  }
+}
+
+function saveNativeSession(token, user) {
+  window.LogiTrackBridge?.saveSession?.(token, user ? JSON.stringify(user) : '');
+}
+
 export function AuthProvider({ children }) {
-  const [user, setUser] = useState(null);
-  const [loading, setLoading] = useState(true);
+  const [nativeSession] = useState(restoreNativeSession);
+  // Profil connu de l'app : premier rendu directement authentifié, /auth/me vérifie ensuite
+  const [user, setUser] = useState(() => nativeSession?.user || null);
+  const [loading, setLoading] = useState(() => !nativeSession?.user);
   const [token, setToken] = useState(localStorage.getItem('logitrack_token'));
+  const authenticatedReported = useRef(false);
 
   useEffect(() => {
     const initAuth = async () => {
@@ -16,6 +37,7 @@ export function AuthProvider({ children }) {
           const response = await api.get('/auth/me');
           if (response.data.user) {
             setUser(response.data.user);
+            saveNativeSession(storedToken, response.data.user);
             if (response.data.user.langue_preferee) {
               localStorage.setItem('logitrack_langue', response.data.user.langue_preferee);
               window.dispatchEvent(new Event('langue-changed'));
@@ -24,6 +46,7 @@ export function AuthProvider({ children }) {
             const op = response.data.operateur;
             const role = op.is_admin ? 'admin' : (response.data.role || 'operateur');
             setUser({ ...op, role });
+            saveNativeSession(storedToken, { ...op, role });
             if (op.langue_preferee) {
               localStorage.setItem('logitrack_langue', op.langue_preferee);
               window.dispatchEvent(new Event('langue-changed'));
@@ -31,8 +54,13 @@ export function AuthProvider({ children }) {
           }
         } catch (error) {
           console.error('Erreur de vérification du token:', error);
-          localStorage.removeItem('logitrack_token');
-          setToken(null);
+          // Serveur momentanément injoignable ou en erreur : la session reste valide
+          if ([401, 403, 404].includes(error.response?.status)) {
+            localStorage.removeItem('logitrack_token');
+            window.LogiTrackBridge?.clearSession?.();
+            setToken(null);
+            setUser(null);
+          }
         }
       }
       setLoading(false);
@@ -41,6 +69,25 @@ export function AuthProvider({ children }) {
     initAuth();
   }, []);
 
+  // Token renouvelé en arrière-plan par l'app (ou session refusée par le serveur)
+  useEffect(() => {
+    const handleSession = (e) => {
+      const next = e.detail?.token || null;
+      setToken(next);
+      if (!next) setUser(null);
+    };
+    window.addEventListener('logitrack:session', handleSession);
+    return () => window.removeEventListener('logitrack:session', handleSession);
+  }, []);
+
+  // Mesure native du temps de lancement jusqu'au premier écran authentifié
+  useEffect(() => {
+    if (user && !authenticatedReported.current) {
+      authenticatedReported.current = true;
+      window.LogiTrackBridge?.onAuthenticated?.();
+    }
+  }, [user]);
+
   // Login avec username/password (admin)
   const login = async (username, password) => {
     try {
@@ -48,6 +95,7 @@ export function AuthProvider({ children }) {
       const { token, user } = response.data;
       
       localStorage.setItem('logitrack_token', token);
+      saveNativeSession(token, user);
       setToken(token);
       setUser(user);
       if (user.langue_preferee) {
@@ -74,6 +122,7 @@ export function AuthProvider({ children }) {
       setToken(token);
       // Gérer les opérateurs promus admin
       const role = operateur.is_admin ? 'admin' : 'operateur';
+      saveNativeSession(token, { ...operateur, role });
       setUser({ ...operateur, role });
       if (operateur.langue_preferee) {
         localStorage.setItem('logitrack_langue', operateur.langue_preferee);
@@ -91,6 +140,7 @@ export function AuthProvider({ children }) {
 
   const logout = () => {
     localStorage.removeItem('logitrack_token');
+    window.LogiTrackBridge?.clearSession?.();
     setToken(null);
     setUser(null);
   };
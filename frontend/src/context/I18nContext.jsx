@@ -309,13 +309,29 @@ const defaultTranslations = {
   'langue.traductions': 'Traductions',
 };
 
+// Lecture synchrone du cache de l'app Android (TranslationCache) : premier rendu
+// directement dans la bonne langue, sans attendre le réseau
+const readNativeCache = (method, ...args) => {
+  try {
+    const raw = window.LogiTrackBridge?.[method]?.(...args);
+    return raw ? JSON.parse(raw) : null;
+  } catch (error) {
+    return null;
+  }
+};
+
 export function I18nProvider({ children }) {
   const [currentLang, setCurrentLang] = useState(() => {
     return localStorage.getItem('logitrack_langue') || 'fr';
   });
-  const [translations, setTranslations] = useState(defaultTranslations);
-  const [langues, setLangues] = useState([]);
-  const [loading, setLoading] = useState(true);
+  const [nativeBundle] = useState(() =>
+    readNativeCache('getTranslationBundle', localStorage.getItem('logitrack_langue') || 'fr')
+  );
+  const [translations, setTranslations] = useState(() =>
+    nativeBundle ? { ...defaultTranslations, ...nativeBundle.traductions } : defaultTranslations
+  );
+  const [langues, setLangues] = useState(() => readNativeCache('getLangues')?.langues || []);
+  const [loading, setLoading] = useState(!nativeBundle);
 
   // Charger les langues disponibles
   const fetchLangues = useCallback(async () => {
@@ -349,6 +365,17 @@ export function I18nProvider({ children }) {
     fetchTranslations(currentLang);
   }, [currentLang, fetchLangues, fetchTranslations]);
 
+  // Traductions mises à jour par l'app Android (delta reçu en arrière-plan)
+  useEffect(() => {
+    const handleUpdate = (event) => {
+      if (event.detail?.langue === currentLang) {
+        fetchTranslations(currentLang);
+      }
+    };
+    window.addEventListener('logitrack:translations', handleUpdate);
+    return () => window.removeEventListener('logitrack:translations', handleUpdate);
+  }, [currentLang, fetchTranslations]);
+
   // Écouter les changements de langue depuis AuthContext (login)
   useEffect(() => {
     const handleLangChange = () => {
@@ -8,10 +8,11 @@ import { useConfirm } from '../components/ConfirmModal';
 
 const API_URL = import.meta.env.VITE_API_URL || '';
 
-/** Build a photo URL with auth token for <img> tags */
-const getPhotoUrl = (photoPath) => {
+/** Build a photo URL with auth token for <img> tags (width = thumbnail hint, served by the Android app) */
+const getPhotoUrl = (photoPath, width) => {
   const token = localStorage.getItem('logitrack_token');
-  return `${API_URL}${photoPath}${token ? `?token=${token}` : ''}`;
+  const params = [token && `token=${token}`, width && `w=${width}`].filter(Boolean).join('&');
+  return `${API_URL}${photoPath}${params ? `?${params}` : ''}`;
 };
 
 export default function Bobines() {
@@ -660,8 +661,9 @@ export default function Bobines() {
                     {photos.map(photo => (
                       <div key={photo.id} className="relative group">
                         <img
-                          src={getPhotoUrl(photo.path)}
+                          src={getPhotoUrl(photo.path, 320)}
                           alt={photo.original_name}
+                          loading="lazy"
                           className="w-full h-20 object-cover rounded-lg border border-gray-200"
                         />
                         <button
@@ -918,8 +920,9 @@ export default function Bobines() {
                         className="block"
                       >
                         <img
-                          src={getPhotoUrl(photo.path)}
+                          src={getPhotoUrl(photo.path, 320)}
                           alt={photo.original_name}
+                          loading="lazy"
                           className="w-full h-24 object-cover rounded-lg border border-gray-200 hover:border-primary-400 transition-colors"
                         />
                       </a>
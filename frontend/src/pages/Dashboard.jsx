@@ -23,9 +23,22 @@ import {
   Ruler,
   SearchCheck,
   Gauge,
-  ShieldCheck
+  ShieldCheck,
+  Monitor
 } from 'lucide-react';
 import api from '../services/api';
+import socketService from '../services/socket';
+
+const WALL_REFRESH_INTERVAL = 60000; // affichage mural : filet de sécurité si un événement est manqué
+
+// Statistiques locales de l'app Android (absentes dans un navigateur)
+function readWallMode() {
+  try {
+    return JSON.parse(window.LogiTrackBridge.getLocalDashboardStats()).enabled === true;
+  } catch {
+    return false;
+  }
+}
 
 // Mapping icônes par code d'étape (12 étapes API 5L)
 const ETAPE_ICONS = {
@@ -64,11 +77,34 @@ export default function Dashboard() {
   const [data, setData] = useState(null);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState(null);
+  const canUseWallMode = typeof window.LogiTrackBridge?.setLocalDashboardStats === 'function';
+  const [wallMode, setWallMode] = useState(() => canUseWallMode && readWallMode());
 
   useEffect(() => {
     loadData();
   }, []);
 
+  // Mode affichage mural : rechargement sur changement de révision, servi par l'app tant qu'elle est à jour
+  useEffect(() => {
+    if (!wallMode) return;
+    socketService.onStatsChanged(({ revision } = {}) => {
+      // L'app ne sert plus sa copie locale dès que la révision diffusée diffère
+      window.LogiTrackBridge.setLocalDashboardRevision?.(revision);
+      loadData();
+    });
+    const interval = setInterval(loadData, WALL_REFRESH_INTERVAL);
+    return () => {
+      socketService.off('stats_changed');
+      clearInterval(interval);
+    };
+  }, [wallMode]);
+
+  const toggleWallMode = () => {
+    const next = !wallMode;
+    window.LogiTrackBridge.setLocalDashboardStats(next);
+    setWallMode(next);
+  };
+
   const loadData = async () => {
     try {
       setError(null);
@@ -118,13 +154,26 @@ export default function Dashboard() {
           <h1 className="text-2xl font-bold text-gray-900">{t('dashboard.titre')}</h1>
           <p className="text-gray-500 mt-1">{t('dashboard.vue_ensemble')}</p>
         </div>
-        <button 
-          onClick={loadData}
-          className="flex items-center gap-2 px-4 py-2 bg-success-50 text-success-600 rounded-xl hover:bg-success-100 transition-colors"
-        >
-          <Activity className="w-5 h-5" />
-          <span className="font-medium">{t('dashboard.actualiser')}</span>
-        </button>
+        <div className="flex items-center gap-2">
+          {canUseWallMode && (
+            <button
+              onClick={toggleWallMode}
+              className={`flex items-center gap-2 px-4 py-2 rounded-xl transition-colors ${
+                wallMode ? 'bg-primary-600 text-white hover:bg-primary-700' : 'bg-gray-100 text-gray-600 hover:bg-gray-200'
+              }`}
+            >
+              <Monitor className="w-5 h-5" />
+              <span className="font-medium">{t('dashboard.affichage_mural', 'Affichage mural')}</span>
+            </button>
+          )}
+          <button 
+            onClick={loadData}
+            className="flex items-center gap-2 px-4 py-2 bg-success-50 text-success-600 rounded-xl hover:bg-success-100 transition-colors"
+          >
+            <Activity className="w-5 h-5" />
+            <span className="font-medium">{t('dashboard.actualiser')}</span>
+          </button>
+        </div>
       </div>
 
       {/* Stats Cards principaux */}
@@ -16,15 +16,20 @@ import {
 import { useToast } from '../components/Toast';
 import { useConfirm } from '../components/ConfirmModal';
 import api from '../services/api';
+import networkMode from '../services/networkMode';
 
 const API_URL = import.meta.env.VITE_API_URL || '';
 
-/** Build a photo URL with auth token for <img> tags */
-const getPhotoUrl = (photoPath) => {
+/** Build a photo URL with auth token for <img> tags (width = thumbnail hint, served by the Android app) */
+const getPhotoUrl = (photoPath, width) => {
   const token = localStorage.getItem('logitrack_token');
-  return `${API_URL}${photoPath}${token ? `?token=${token}` : ''}`;
+  const params = [token && `token=${token}`, width && `w=${width}`].filter(Boolean).join('&');
+  return `${API_URL}${photoPath}${params ? `?${params}` : ''}`;
 };
 
+/** Taille de page de la liste des tubes : réduite en mode réseau allégé (app Android) */
+const tubesPageSize = () => networkMode.pageSize(500, 100);
+
 // ============================================
 // Constantes - 12 étapes de production
 // ============================================
@@ -165,7 +170,7 @@ export default function Tubes() {
       if (filterEtape) params.append('etape', filterEtape);
       if (filterCoulee) params.append('coulee_id', filterCoulee);
       if (filterDecision) params.append('decision', filterDecision);
-      params.append('limit', '500');
+      params.append('limit', String(tubesPageSize()));
 
       const response = await api.get(`/tubes?${params}`);
       // Support paginated format { data, pagination } or raw array
@@ -197,6 +202,16 @@ export default function Tubes() {
     init();
   }, [fetchTubes]);
 
+  // Bascule full ↔ lite : recharger la liste avec la taille de page du nouveau mode
+  useEffect(() => {
+    let limit = tubesPageSize();
+    return networkMode.onChange(() => {
+      if (tubesPageSize() === limit) return;
+      limit = tubesPageSize();
+      fetchTubes();
+    });
+  }, [fetchTubes]);
+
   // Refresh après action
   const refresh = async () => {
     await Promise.all([fetchTubes(), fetchStats()]);
@@ -1554,8 +1569,9 @@ function TubeDetailModal({ tube, onClose, onUpdate }) {
                               {(etapePhotos[etapeDef.numero] || []).map(photo => (
                                 <div key={photo.id} className="relative group">
                                   <img
-                                    src={getPhotoUrl(photo.path)}
+                                    src={getPhotoUrl(photo.path, 160)}
                                     alt={photo.original_name}
+                                    loading="lazy"
                                     className="w-12 h-12 object-cover rounded-md border border-gray-200 cursor-pointer hover:opacity-80 transition-opacity"
                                     onClick={() => setPhotoViewer({ src: getPhotoUrl(photo.path), alt: photo.original_name })}
                                   />
@@ -33,6 +33,7 @@ api.interceptors.response.use(
       const errorCode = error.response?.data?.code;
       if (errorCode === 'TOKEN_EXPIRED' || errorCode === 'TOKEN_INVALID') {
         localStorage.removeItem('logitrack_token');
+        window.LogiTrackBridge?.clearSession?.();
         window.location.href = '/login';
       }
     }
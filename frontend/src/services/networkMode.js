@@ -0,0 +1,43 @@
+// Mode réseau fourni par l'app Android (NetworkQualityMonitor) : full, lite ou offline
+// Dans un navigateur classique, le mode reste 'full'
+
+class NetworkModeService {
+  constructor() {
+    this.mode = 'full';
+    this.listeners = new Set();
+
+    const bridge = typeof window !== 'undefined' ? window.LogiTrackBridge : null;
+    if (bridge?.getNetworkMode) {
+      try {
+        this.mode = JSON.parse(bridge.getNetworkMode()).mode || 'full';
+      } catch (e) {
+        console.warn('Mode réseau illisible:', e);
+      }
+      window.addEventListener('logitrack:networkmode', (event) => this.setMode(event.detail?.mode));
+    }
+  }
+
+  setMode(mode) {
+    if (!mode || mode === this.mode) return;
+    console.log(`📶 Mode réseau: ${this.mode} → ${mode}`);
+    this.mode = mode;
+    this.listeners.forEach(callback => callback(mode));
+  }
+
+  // Mode allégé : pas d'images, pages réduites (les envois demandés par l'opérateur partent tout de suite)
+  isLite() {
+    return this.mode !== 'full';
+  }
+
+  // Taille de page adaptée au mode courant
+  pageSize(full, lite) {
+    return this.isLite() ? lite : full;
+  }
+
+  onChange(callback) {
+    this.listeners.add(callback);
+    return () => this.listeners.delete(callback);
+  }
+}
+
+export default new NetworkModeService();
@@ -99,6 +99,13 @@ class SocketService {
     }
   }
 
+  // Écouter les changements de révision des statistiques (dashboard, tubes)
+  onStatsChanged(callback) {
+    if (this.socket) {
+      this.socket.on('stats_changed', callback);
+    }
+  }
+
   // Supprimer un écouteur
   off(event) {
     if (this.socket) {
@@ -0,0 +1,262 @@
+package com.deltatx.logitrack;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.brotli.dec.BrotliInputStream;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * CompactApiClient — Récupère nativement les routes API les plus lourdes
+ * en mode compact négocié (brotli/gzip + format colonnes), les redéveloppe
+ * en JSON standard pour la page et mesure les octets transférés par quart
+ */
+public class CompactApiClient implements RequestInterceptor {
+
+    private static final String TAG = "CompactApiClient";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // Routes chaudes : listes et détails tubes / bobines / coulées
+    private static final Pattern HOT_ROUTES =
+        Pattern.compile("^/api/(tubes|bobines|coulees)(/\\d+)?/?$");
+
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int OFFLINE_CONNECT_TIMEOUT = 2000; // Lien déjà jugé hors ligne : échouer vite
+
+    // Le client n'a pas de cache : une requête conditionnelle recevrait un 304 sans corps
+    private static final String[] CONDITIONAL_HEADERS = {
+        "Accept-Encoding", "If-None-Match", "If-Modified-Since", "If-Match", "If-Unmodified-Since", "If-Range"
+    };
+
+    private final String serverUrl;
+    private final SharedPreferences stats;
+    private volatile NetworkQualityMonitor quality;
+
+    public CompactApiClient(Context context, String serverUrl) {
+        this.serverUrl = serverUrl;
+        this.stats = NativeUtils.stats(context);
+    }
+
+    /**
+     * Transmet le RTT et le débit de chaque requête à l'estimateur de qualité du lien
+     */
+    public void setQualityMonitor(NetworkQualityMonitor quality) {
+        this.quality = quality;
+    }
+
+    @Override
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        if (serverUrl == null || !"GET".equalsIgnoreCase(request.getMethod())) return null;
+
+        Uri uri = request.getUrl();
+        if (!uri.toString().startsWith(serverUrl) || uri.getPath() == null
+                || !HOT_ROUTES.matcher(uri.getPath()).matches()) {
+            return null;
+        }
+
+        NetworkQualityMonitor monitor = quality;
+        boolean offline = monitor != null && monitor.getMode() == NetworkQualityMonitor.Mode.OFFLINE;
+
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL(uri.toString()).openConnection();
+            conn.setConnectTimeout(offline ? OFFLINE_CONNECT_TIMEOUT : CONNECT_TIMEOUT);
+            conn.setReadTimeout(30000);
+            for (Map.Entry<String, String> h : request.getRequestHeaders().entrySet()) {
+                if (!isDropped(h.getKey())) {
+                    conn.setRequestProperty(h.getKey(), h.getValue());
+                }
+            }
+            // Accept-Encoding explicite : HttpURLConnection ne décompresse plus, on mesure le vrai volume
+            conn.setRequestProperty("Accept-Encoding", "br, gzip");
+            conn.setRequestProperty("X-LogiTrack-Format", "columns");
+
+            long started = SystemClock.elapsedRealtime();
+            int code = conn.getResponseCode();
+            long headersAt = SystemClock.elapsedRealtime();
+            if (code < 200 || (code >= 300 && code < 400)) {
+                // WebResourceResponse refuse les codes 1xx/3xx : le WebView refait la requête lui-même
+                Log.w(TAG, "Réponse " + code + " non servie en mode compact pour " + uri.getPath());
+                return null;
+            }
+            InputStream raw = code >= 400 ? conn.getErrorStream() : conn.getInputStream();
+            if (raw == null) raw = new ByteArrayInputStream(new byte[0]);
+
+            CountingInputStream wire = new CountingInputStream(raw);
+            byte[] body = NativeUtils.readAll(decode(wire, conn.getContentEncoding()));
+            NetworkQualityMonitor q = quality;
+            if (q != null) {
+                q.recordSample(headersAt - started, wire.getCount(), SystemClock.elapsedRealtime() - headersAt);
+            }
+
+            if ("columns".equals(conn.getHeaderField("X-LogiTrack-Format")) && body.length > 0) {
+                Object expanded = expand(new JSONTokener(new String(body, UTF8)).nextValue());
+                body = expanded.toString().getBytes(UTF8);
+            }
+
+            record(wire.getCount(), body.length);
+
+            Map<String, String> headers = new HashMap<>();
+            for (Map.Entry<String, List<String>> h : conn.getHeaderFields().entrySet()) {
+                String name = h.getKey();
+                if (name == null || h.getValue().isEmpty()) continue;
+                if (name.equalsIgnoreCase("Content-Encoding") || name.equalsIgnoreCase("Content-Length")
+                        || name.equalsIgnoreCase("Content-Type")) continue;
+                headers.put(name, h.getValue().get(0));
+            }
+
+            String reason = conn.getResponseMessage();
+            return new WebResourceResponse("application/json", "UTF-8", code,
+                reason != null && !reason.isEmpty() ? reason : "OK",
+                headers, new ByteArrayInputStream(body));
+        } catch (Exception e) {
+            NetworkQualityMonitor q = quality;
+            if (q != null && e instanceof IOException) q.recordFailure();
+            // En cas d'échec, le WebView refait la requête lui-même
+            Log.w(TAG, "Mode compact indisponible pour " + uri.getPath() + ": " + e.getMessage());
+            return null;
+        } finally {
+            if (conn != null) conn.disconnect();
+        }
+    }
+
+    private static boolean isDropped(String header) {
+        for (String name : CONDITIONAL_HEADERS) {
+            if (name.equalsIgnoreCase(header)) return true;
+        }
+        return false;
+    }
+
+    private static InputStream decode(InputStream in, String encoding) throws IOException {
+        if ("br".equalsIgnoreCase(encoding)) return new BrotliInputStream(in);
+        if ("gzip".equalsIgnoreCase(encoding)) return new GZIPInputStream(in);
+        return in;
+    }
+
+    /**
+     * Redéveloppe { $cols, $rows } en tableau d'objets (inverse de compactResponse.toColumns)
+     */
+    static Object expand(Object value) throws JSONException {
+        if (value instanceof JSONObject) {
+            JSONObject obj = (JSONObject) value;
+            if (obj.has("$cols") && obj.has("$rows")) {
+                JSONArray cols = obj.getJSONArray("$cols");
+                JSONArray rows = obj.getJSONArray("$rows");
+                JSONArray out = new JSONArray();
+                for (int r = 0; r < rows.length(); r++) {
+                    JSONArray row = rows.getJSONArray(r);
+                    JSONObject item = new JSONObject();
+                    for (int c = 0; c < cols.length(); c++) {
+                        item.put(cols.getString(c), expand(row.get(c)));
+                    }
+                    out.put(item);
+                }
+                return out;
+            }
+            JSONObject out = new JSONObject();
+            Iterator<String> keys = obj.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                out.put(key, expand(obj.get(key)));
+            }
+            return out;
+        }
+        if (value instanceof JSONArray) {
+            JSONArray arr = (JSONArray) value;
+            JSONArray out = new JSONArray();
+            for (int i = 0; i < arr.length(); i++) {
+                out.put(expand(arr.get(i)));
+            }
+            return out;
+        }
+        return value;
+    }
+
+    // ============================================
+    // Mesures par quart (06-14, 14-22, 22-06)
+    // ============================================
+
+    static String currentShift(Calendar now) {
+        Calendar day = (Calendar) now.clone();
+        int hour = now.get(Calendar.HOUR_OF_DAY);
+        String shift;
+        if (hour >= 6 && hour < 14) {
+            shift = "matin";
+        } else if (hour >= 14 && hour < 22) {
+            shift = "apres-midi";
+        } else {
+            shift = "nuit";
+            // Le quart de nuit commencé la veille garde la date de la veille
+            if (hour < 6) day.add(Calendar.DAY_OF_MONTH, -1);
+        }
+        return String.format(Locale.ROOT, "%1$tY-%1$tm-%1$td/%2$s", day, shift);
+    }
+
+    private synchronized void record(long wireBytes, long jsonBytes) {
+        String shift = currentShift(Calendar.getInstance());
+        SharedPreferences.Editor editor = stats.edit();
+        if (!shift.equals(stats.getString("shift", null))) {
+            logShift();
+            editor.putString("shift", shift)
+                .putLong("wire_bytes", 0)
+                .putLong("json_bytes", 0)
+                .putInt("requests", 0);
+            editor.apply();
+            editor = stats.edit();
+        }
+        editor.putLong("wire_bytes", stats.getLong("wire_bytes", 0) + wireBytes)
+            .putLong("json_bytes", stats.getLong("json_bytes", 0) + jsonBytes)
+            .putInt("requests", stats.getInt("requests", 0) + 1)
+            .apply();
+    }
+
+    private void logShift() {
+        if (stats.getString("shift", null) == null) return;
+        Log.i(TAG, "Quart " + stats.getString("shift", "") + " : "
+            + stats.getInt("requests", 0) + " requêtes, "
+            + stats.getLong("wire_bytes", 0) + " octets reçus pour "
+            + stats.getLong("json_bytes", 0) + " octets JSON");
+    }
+
+    /**
+     * Statistiques du quart courant (exposées à la page via le bridge)
+     */
+    public String getShiftStats() {
+        try {
+            long wire = stats.getLong("wire_bytes", 0);
+            long json = stats.getLong("json_bytes", 0);
+            return new JSONObject()
+                .put("shift", stats.getString("shift", currentShift(Calendar.getInstance())))
+                .put("requests", stats.getInt("requests", 0))
+                .put("wireBytes", wire)
+                .put("jsonBytes", json)
+                .put("ratio", json > 0 ? (double) wire / json : 1.0)
+                .toString();
+        } catch (JSONException e) {
+            return "{}";
+        }
+    }
+}
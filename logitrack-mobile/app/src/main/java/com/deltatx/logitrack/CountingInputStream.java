@@ -0,0 +1,35 @@
+package com.deltatx.logitrack;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * CountingInputStream — Compte les octets lus pour mesurer le coût réseau réel
+ */
+class CountingInputStream extends FilterInputStream {
+
+    private volatile long count = 0;
+
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) count++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int n = super.read(buffer, offset, length);
+        if (n > 0) count += n;
+        return n;
+    }
+}
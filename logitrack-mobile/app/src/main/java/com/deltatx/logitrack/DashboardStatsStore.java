@@ -0,0 +1,231 @@
+package com.deltatx.logitrack;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DashboardStatsStore — Statistiques du dashboard servies localement (mode affichage mural)
+ * - /api/dashboard/stats et /api/tubes/stats gardés en mémoire avec leur révision serveur
+ * - Avant de servir la copie locale : GET /api/dashboard/revision (aucune requête SQL côté serveur)
+ * - Rechargement complet seulement si la révision a changé, et au moins toutes les 5 min (réconciliation)
+ * - Révision diffusée par stats_changed transmise par la page : pas de chiffres périmés pendant la fenêtre de 5 s
+ */
+public class DashboardStatsStore implements RequestInterceptor {
+
+    private static final String TAG = "DashboardStatsStore";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String CONFIG_PREFS = "logitrack_config";
+    private static final String PREF_ENABLED = "local_dashboard_stats";
+
+    static final String[] ROUTES = { "/api/dashboard/stats", "/api/tubes/stats" };
+    static final long REVISION_CHECK_INTERVAL = 5000;        // 5 s : plusieurs routes, une seule vérification
+    static final long RECONCILE_INTERVAL = 5 * 60 * 1000;    // 5 min
+
+    /**
+     * Entry — Réponse mise en cache pour une route
+     */
+    static final class Entry {
+        final byte[] body;
+        final String revision;
+        final long fetchedAt;
+
+        Entry(byte[] body, String revision, long fetchedAt) {
+            this.body = body;
+            this.revision = revision;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private final String serverUrl;
+    private final SharedPreferences config;
+    private final SharedPreferences stats;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private volatile SessionStore session;
+    private String knownRevision = null;
+    private long revisionCheckedAt = 0;
+
+    public DashboardStatsStore(Context context, String serverUrl) {
+        this.serverUrl = serverUrl;
+        this.config = context.getSharedPreferences(CONFIG_PREFS, Context.MODE_PRIVATE);
+        this.stats = NativeUtils.stats(context);
+    }
+
+    /**
+     * Session native : token utilisé quand la requête de la page n'en porte pas
+     */
+    public void setSessionStore(SessionStore session) {
+        this.session = session;
+    }
+
+    public boolean isEnabled() {
+        return config.getBoolean(PREF_ENABLED, false);
+    }
+
+    public void setEnabled(boolean enabled) {
+        config.edit().putBoolean(PREF_ENABLED, enabled).apply();
+        if (!enabled) clear();
+        Log.i(TAG, "Statistiques locales " + (enabled ? "activées" : "désactivées"));
+    }
+
+    private synchronized void clear() {
+        entries.clear();
+        knownRevision = null;
+        revisionCheckedAt = 0;
+    }
+
+    @Override
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        if (serverUrl == null || !isEnabled() || !"GET".equalsIgnoreCase(request.getMethod())) return null;
+
+        Uri uri = request.getUrl();
+        String path = uri.getPath();
+        if (!uri.toString().startsWith(serverUrl) || !isStatsRoute(path) || uri.getQuery() != null) return null;
+
+        String auth = request.getRequestHeaders().get("Authorization");
+        SessionStore s = session;
+        String token = s != null ? s.getToken() : null;
+        if (auth == null && token != null) auth = "Bearer " + token;
+        if (auth == null) return null;
+
+        // Aucun verrou pendant les appels réseau : seul l'état de révision est protégé
+        long now = SystemClock.elapsedRealtime();
+        Entry entry = entries.get(path);
+        try {
+            if (entry != null && now - entry.fetchedAt < RECONCILE_INTERVAL && isCurrent(entry, auth, now)) {
+                NativeUtils.count(stats, "dashboard_local_hits");
+                return respond(entry.body, "local");
+            }
+
+            Entry fresh = fetch(path, auth, now);
+            if (fresh == null) return null;
+            if (isEnabled()) entries.put(path, fresh);
+            updateRevision(fresh.revision, now);
+            NativeUtils.count(stats, "dashboard_server_fetches");
+            return respond(fresh.body, "server");
+        } catch (IOException e) {
+            // Serveur momentanément injoignable : l'écran mural garde les derniers chiffres
+            Log.d(TAG, "Statistiques locales conservées (" + path + "): " + e.getMessage());
+            return entry != null ? respond(entry.body, "stale") : null;
+        }
+    }
+
+    /**
+     * Révision diffusée par le serveur (événement stats_changed reçu par la page) :
+     * prise en compte immédiatement, sans attendre la prochaine vérification
+     */
+    public void onRevisionChanged(String revision) {
+        if (revision == null || revision.isEmpty()) return;
+        updateRevision(revision, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Retenir une révision lue à l'instant checkedAt, sauf si une plus récente est déjà connue
+     * (une réponse lente ne doit pas écraser la révision diffusée pendant l'appel) ; renvoie la révision retenue
+     */
+    private synchronized String updateRevision(String revision, long checkedAt) {
+        if (checkedAt >= revisionCheckedAt) {
+            knownRevision = revision;
+            revisionCheckedAt = checkedAt;
+        }
+        return knownRevision;
+    }
+
+    static boolean isStatsRoute(String path) {
+        if (path == null) return false;
+        for (String route : ROUTES) {
+            if (route.equals(path)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * La copie locale correspond-elle à la révision serveur ? (vérification partagée par toutes les routes)
+     */
+    private boolean isCurrent(Entry entry, String auth, long now) throws IOException {
+        if (entry.revision == null) return false;
+        String revision;
+        long checkedAt;
+        synchronized (this) {
+            revision = knownRevision;
+            checkedAt = revisionCheckedAt;
+        }
+        if (now - checkedAt >= REVISION_CHECK_INTERVAL) {
+            byte[] body = get(serverUrl + "/api/dashboard/revision", auth, null);
+            NativeUtils.count(stats, "dashboard_revision_checks");
+            if (body == null) return false;
+            try {
+                revision = updateRevision(new JSONObject(new String(body, UTF8)).getString("revision"), now);
+            } catch (JSONException e) {
+                return false;
+            }
+        }
+        return entry.revision.equals(revision);
+    }
+
+    private Entry fetch(String path, String auth, long now) throws IOException {
+        String[] revision = new String[1];
+        byte[] body = get(serverUrl + path, auth, revision);
+        return body != null ? new Entry(body, revision[0], now) : null;
+    }
+
+    /**
+     * GET authentifié ; null si le serveur ne répond pas 200 (la page gère alors l'erreur elle-même)
+     */
+    private static byte[] get(String url, String auth, String[] revisionOut) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(5000);
+        conn.setReadTimeout(15000);
+        conn.setRequestProperty("Authorization", auth);
+        try {
+            if (conn.getResponseCode() != 200) return null;
+            if (revisionOut != null) revisionOut[0] = conn.getHeaderField("X-LogiTrack-Stats-Revision");
+
+            return NativeUtils.readAll(conn.getInputStream());
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static WebResourceResponse respond(byte[] body, String source) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Cache-Control", "no-store");
+        headers.put("X-LogiTrack-Stats-Source", source);
+        return new WebResourceResponse("application/json", "UTF-8", 200, "OK", headers,
+            new ByteArrayInputStream(body));
+    }
+
+    /**
+     * État du mode et compteurs cumulés (exposés à la page via le bridge)
+     */
+    public synchronized String getStatusJson() {
+        try {
+            return new JSONObject()
+                .put("enabled", isEnabled())
+                .put("revision", knownRevision != null ? knownRevision : JSONObject.NULL)
+                .put("localHits", stats.getInt("dashboard_local_hits", 0))
+                .put("serverFetches", stats.getInt("dashboard_server_fetches", 0))
+                .put("revisionChecks", stats.getInt("dashboard_revision_checks", 0))
+                .toString();
+        } catch (JSONException e) {
+            return "{}";
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package com.deltatx.logitrack;
 
+import android.Manifest;
+import android.content.ActivityNotFoundException;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.net.ConnectivityManager;
 import android.net.Network;
 import android.net.NetworkCapabilities;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.view.WindowManager;
@@ -18,6 +25,7 @@ import android.webkit.JsResult;
 import android.webkit.WebChromeClient;
 import android.webkit.WebResourceError;
 import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
@@ -25,8 +33,14 @@ import android.widget.ProgressBar;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.Lifecycle;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
 /**
  * MainActivity — Affiche LogiTrack en WebView plein écran
  * Gère la connectivité, le retry automatique et la reconfiguration
@@ -35,6 +49,9 @@ public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "LogiTrack";
 
+    // Premier MainActivity du processus : le temps de lancement inclut le démarrage et le splash
+    private static boolean coldStart = true;
+
     private WebView webView;
     private SwipeRefreshLayout swipeRefresh;
     private ProgressBar loadingBar;
@@ -43,12 +60,27 @@ public class MainActivity extends AppCompatActivity {
     private boolean isPageLoaded = false;
     private boolean isShowingError = false;
     private String lastErrorMessage = "";
+    private volatile String currentPageUrl = null;   // Page affichée : le bridge de session ne répond qu'au serveur configuré
     private NsdHelper nsdHelper;
+    private CompactApiClient compactApiClient;
+    private PhotoCache photoCache;
+    private TranslationCache translationCache;
+    private DashboardStatsStore dashboardStats;
+    private volatile RequestInterceptor[] interceptors = new RequestInterceptor[0];
+    private SessionStore sessionStore;
+    private long launchStartedAt;
+    private boolean launchMeasured = false;
+    private RecoveryCoordinator recovery;
+    private NetworkQualityMonitor networkQuality;
+    private long nextRetryDelayMs = 0;
+    private int nextRetryAttempt = 0;
     private Handler retryHandler;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        launchStartedAt = coldStart ? Process.getStartElapsedRealtime() : SystemClock.elapsedRealtime();
+        coldStart = false;
         setContentView(R.layout.activity_main);
 
         // Plein écran immersif
@@ -70,13 +102,54 @@ public class MainActivity extends AppCompatActivity {
             goToConfig();
             return;
         }
+        sessionStore = new SessionStore(this, serverUrl);
+        sessionStore.setListener(this::onSessionChanged);
+        compactApiClient = new CompactApiClient(this, serverUrl);
+        photoCache = new PhotoCache(this, serverUrl);
+        photoCache.setSessionStore(sessionStore);
+        translationCache = new TranslationCache(this, serverUrl);
+        dashboardStats = new DashboardStatsStore(this, serverUrl);
+        dashboardStats.setSessionStore(sessionStore);
+        translationCache.setListener(langue -> retryHandler.post(() -> onTranslationsUpdated(langue)));
+        networkQuality = new NetworkQualityMonitor(this, this::onNetworkModeChanged);
+        compactApiClient.setQualityMonitor(networkQuality);
+        photoCache.setQualityMonitor(networkQuality);
+        interceptors = new RequestInterceptor[] {
+            photoCache,         // Photos /uploads : cache disque + miniatures natives
+            translationCache,   // Langues et traductions : bundle local, mis à jour par delta en arrière-plan
+            dashboardStats,     // Statistiques du dashboard (mode affichage mural) : copie locale tant que la révision ne change pas
+            compactApiClient    // Routes lourdes en mode compact (brotli/gzip + colonnes), décodées ici
+        };
+        recovery = new RecoveryCoordinator(this, serverUrl, new RecoveryCoordinator.Listener() {
+            @Override
+            public void onServerHealthy() {
+                loadApp();
+            }
 
-        loadApp();
+            @Override
+            public void onRetryScheduled(long delayMs, int attempt) {
+                nextRetryDelayMs = delayMs;
+                nextRetryAttempt = attempt;
+                swipeRefresh.setRefreshing(false);
+                if (isShowingError) {
+                    updateErrorPageChecks();
+                }
+            }
+        });
+
+        networkQuality.start();
+        sessionStore.start();
+        requestNotificationPermission();
+        if (getIntent().hasExtra(NotificationService.EXTRA_ROUTE)) {
+            openRouteFromIntent(getIntent());
+        } else {
+            loadApp();
+        }
 
         // Swipe-to-refresh
         swipeRefresh.setOnRefreshListener(() -> {
             if (isShowingError) {
-                loadApp();
+                recovery.retryNow();
             } else {
                 webView.reload();
             }
@@ -135,6 +208,7 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onPageStarted(WebView view, String url, Bitmap favicon) {
                 super.onPageStarted(view, url, favicon);
+                currentPageUrl = url;
                 // Ne pas afficher la loading bar si on charge la page d'erreur locale
                 if (!url.startsWith("file:///android_asset/")) {
                     loadingBar.setVisibility(View.VISIBLE);
@@ -157,7 +231,31 @@ public class MainActivity extends AppCompatActivity {
                     isShowingError = false;
                     isPageLoaded = true;
                     injectMobileOptimizations();
+                    onServerRecovered();
+                }
+            }
+
+            @Override
+            public boolean shouldOverrideUrlLoading(WebView view, WebResourceRequest request) {
+                String url = request.getUrl().toString();
+                if (url.startsWith("file:///android_asset/") || isOnServer(serverUrl, url)) return false;
+
+                // Lien hors du serveur LogiTrack : navigateur externe, jamais dans la WebView qui expose le bridge
+                try {
+                    startActivity(new Intent(Intent.ACTION_VIEW, request.getUrl()));
+                } catch (ActivityNotFoundException e) {
+                    Log.w(TAG, "Aucune application pour ouvrir " + url);
                 }
+                return true;
+            }
+
+            @Override
+            public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+                for (RequestInterceptor interceptor : interceptors) {
+                    WebResourceResponse response = interceptor.intercept(request);
+                    if (response != null) return response;
+                }
+                return super.shouldInterceptRequest(view, request);
             }
 
             @Override
@@ -211,7 +309,8 @@ public class MainActivity extends AppCompatActivity {
     private class LogiTrackBridge {
         @JavascriptInterface
         public void retry() {
-            retryHandler.post(() -> loadApp());
+            // Vérification /api/health d'abord, rechargement complet seulement si le serveur répond
+            retryHandler.post(() -> recovery.retryNow());
         }
 
         @JavascriptInterface
@@ -222,6 +321,90 @@ public class MainActivity extends AppCompatActivity {
                 goToConfig();
             });
         }
+
+        /**
+         * Session gardée par l'app, lue par AuthContext avant sa première requête
+         * (uniquement pour les pages du serveur configuré : le token ne sort jamais vers un autre hôte)
+         */
+        @JavascriptInterface
+        public String getSession() {
+            SessionStore session = sessionStore;
+            return session != null && isServerPage() ? session.getSessionJson() : "";
+        }
+
+        @JavascriptInterface
+        public void saveSession(String token, String userJson) {
+            SessionStore session = sessionStore;
+            if (session != null && token != null && isServerPage()) session.save(token, userJson);
+        }
+
+        @JavascriptInterface
+        public void clearSession() {
+            SessionStore session = sessionStore;
+            if (session != null && isServerPage()) session.clear();
+        }
+
+        @JavascriptInterface
+        public String getSessionStats() {
+            SessionStore session = sessionStore;
+            return session != null ? session.getStatusJson() : "{}";
+        }
+
+        /**
+         * Premier écran authentifié affiché par la page
+         */
+        @JavascriptInterface
+        public void onAuthenticated() {
+            retryHandler.post(() -> onFirstAuthenticatedScreen());
+        }
+
+        @JavascriptInterface
+        public String getRecoveryStats() {
+            RecoveryCoordinator r = recovery;
+            return r != null ? r.getStatsJson() : "{}";
+        }
+
+        @JavascriptInterface
+        public String getTranslationBundle(String langue) {
+            TranslationCache translations = translationCache;
+            return translations != null && langue != null ? translations.getCachedBundleJson(langue) : "";
+        }
+
+        @JavascriptInterface
+        public String getLangues() {
+            TranslationCache translations = translationCache;
+            return translations != null ? translations.getCachedLanguesJson() : "";
+        }
+
+        @JavascriptInterface
+        public String getLocalDashboardStats() {
+            DashboardStatsStore dashboard = dashboardStats;
+            return dashboard != null ? dashboard.getStatusJson() : "{\"enabled\":false}";
+        }
+
+        @JavascriptInterface
+        public void setLocalDashboardStats(boolean enabled) {
+            DashboardStatsStore dashboard = dashboardStats;
+            if (dashboard != null) dashboard.setEnabled(enabled);
+        }
+
+        @JavascriptInterface
+        public void setLocalDashboardRevision(String revision) {
+            DashboardStatsStore dashboard = dashboardStats;
+            if (dashboard != null) dashboard.onRevisionChanged(revision);
+        }
+
+        @JavascriptInterface
+        public String getNetworkMode() {
+            NetworkQualityMonitor q = networkQuality;
+            return q != null ? q.getStatusJson() : "{\"mode\":\"full\"}";
+        }
+
+        @JavascriptInterface
+        public String getNetworkStats() {
+            CompactApiClient client = compactApiClient;
+            return client != null ? client.getShiftStats() : "{}";
+        }
     }
 
     /**
@@ -238,6 +421,78 @@ public class MainActivity extends AppCompatActivity {
 
         // Après chargement, injecter les détails
         retryHandler.postDelayed(() -> updateErrorPageChecks(), 800);
+
+        // Reconnexion coordonnée : délai étalé par appareil + écoute de la ré-annonce mDNS
+        if (recovery != null) {
+            recovery.onFailure();
+            if (nsdHelper == null) {
+                nsdHelper = new NsdHelper(this);
+            }
+            if (!nsdHelper.isDiscovering()) {
+                nsdHelper.watchServer((host, port) -> recovery.onServerAnnounced());
+            }
+        }
+    }
+
+    private void onServerRecovered() {
+        if (recovery != null) {
+            recovery.onRecovered();
+        }
+        if (networkQuality != null) {
+            networkQuality.onServerReachable();
+        }
+        if (nsdHelper != null) {
+            nsdHelper.stopDiscovery();
+        }
+    }
+
+    /**
+     * Changement de mode réseau : prévenir la page, ou relancer la récupération si le lien revient
+     */
+    private void onNetworkModeChanged(NetworkQualityMonitor.Mode mode, String reason) {
+        if (isShowingError) {
+            if (mode != NetworkQualityMonitor.Mode.OFFLINE && recovery != null && recovery.isRecovering()) {
+                recovery.onLinkRestored();
+            }
+            return;
+        }
+        if (isPageLoaded) {
+            webView.evaluateJavascript(
+                "window.dispatchEvent(new CustomEvent('logitrack:networkmode', { detail: "
+                    + networkQuality.getStatusJson() + " }))", null);
+        }
+    }
+
+    /**
+     * Nouvelle version des traductions en cache : la page recharge la langue courante (servie localement)
+     */
+    private void onTranslationsUpdated(String langue) {
+        if (!isPageLoaded || isShowingError) return;
+        webView.evaluateJavascript(
+            "window.dispatchEvent(new CustomEvent('logitrack:translations', { detail: { langue: "
+                + JSONObject.quote(langue) + " } }))", null);
+    }
+
+    /**
+     * Token renouvelé en arrière-plan (ou session refusée) : la page et le service de notifications suivent
+     */
+    private void onSessionChanged(String token) {
+        if (isPageLoaded && !isShowingError && isServerPage()) {
+            String value = token != null ? JSONObject.quote(token) : "null";
+            webView.evaluateJavascript(
+                "(function() { var t = " + value + ";"
+                    + " if (t) { localStorage.setItem('logitrack_token', t); } else { localStorage.removeItem('logitrack_token'); }"
+                    + " window.dispatchEvent(new CustomEvent('logitrack:session', { detail: { token: t } })); })()", null);
+        }
+        if (!getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.RESUMED)) {
+            NotificationService.updateToken(getApplicationContext(), token);
+        }
+    }
+
+    private void onFirstAuthenticatedScreen() {
+        if (launchMeasured || sessionStore == null) return;
+        launchMeasured = true;
+        sessionStore.recordLaunch(SystemClock.elapsedRealtime() - launchStartedAt);
     }
 
     /**
@@ -259,6 +514,9 @@ public class MainActivity extends AppCompatActivity {
             "setErrorInfo('%s', '%s');",
             wifiStatus, serverStatus, networkStatus, safeError, safeUrl
         );
+        if (nextRetryDelayMs > 0) {
+            js += "if (window.setNextRetry) setNextRetry(" + ((nextRetryDelayMs + 999) / 1000) + ", " + nextRetryAttempt + ");";
+        }
 
         webView.evaluateJavascript(js, null);
     }
@@ -297,6 +555,97 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Ouvre la route demandée par une notification (deep link)
+     */
+    private void openRouteFromIntent(Intent intent) {
+        String route = intent != null ? intent.getStringExtra(NotificationService.EXTRA_ROUTE) : null;
+        if (route == null || serverUrl == null) return;
+        intent.removeExtra(NotificationService.EXTRA_ROUTE);
+
+        String url = buildRouteUrl(serverUrl, route);
+        if (url == null) {
+            // Route refusée : l'app s'ouvre sur son écran d'accueil plutôt que sur une WebView vide
+            Log.w(TAG, "Route de notification refusée: " + route);
+            loadApp();
+            return;
+        }
+        if (!isNetworkAvailable()) {
+            showCustomErrorPage("Pas de connexion réseau WiFi");
+            return;
+        }
+        webView.loadUrl(url);
+    }
+
+    private boolean isServerPage() {
+        return isOnServer(serverUrl, currentPageUrl);
+    }
+
+    /**
+     * L'URL est-elle servie par le serveur configuré ? (même schéma, hôte et port)
+     */
+    static boolean isOnServer(String serverUrl, String url) {
+        if (serverUrl == null || url == null) return false;
+        Uri server = Uri.parse(serverUrl);
+        Uri target = Uri.parse(url);
+        return server.getHost() != null
+            && server.getHost().equals(target.getHost())
+            && server.getPort() == target.getPort()
+            && server.getScheme() != null
+            && server.getScheme().equals(target.getScheme());
+    }
+
+    /**
+     * URL d'une route de l'app sur le serveur configuré, null si la route sortirait de ce serveur
+     */
+    static String buildRouteUrl(String serverUrl, String route) {
+        if (!NotificationService.isSafeRoute(route)) return null;
+        Uri server = Uri.parse(serverUrl);
+        Uri target = Uri.parse(route);
+        Uri url = server.buildUpon()
+            .encodedPath(target.getEncodedPath())
+            .encodedQuery(target.getEncodedQuery())
+            .encodedFragment(target.getEncodedFragment())
+            .build();
+        return isOnServer(serverUrl, url.toString()) ? url.toString() : null;
+    }
+
+    private void requestNotificationPermission() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                    != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this,
+                new String[]{ Manifest.permission.POST_NOTIFICATIONS }, 1);
+        }
+    }
+
+    /**
+     * Passe le relais au service de notifications natif pendant que la WebView est en pause
+     */
+    private void startBackgroundNotifications() {
+        if (serverUrl == null || !isPageLoaded || isShowingError) return;
+
+        // Session native d'abord : disponible même si le moteur de rendu de la WebView ne répond plus
+        String token = sessionStore != null ? sessionStore.getToken() : null;
+        if (token != null) {
+            NotificationService.start(getApplicationContext(), serverUrl, token);
+            return;
+        }
+
+        webView.evaluateJavascript("localStorage.getItem('logitrack_token')", value -> {
+            // Réponse asynchrone : l'app a pu revenir au premier plan entre-temps (onResume a arrêté le service)
+            if (getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.RESUMED)) return;
+            try {
+                Object token = new JSONTokener(value).nextValue();
+                if (token instanceof String && !((String) token).isEmpty()) {
+                    NotificationService.start(getApplicationContext(), serverUrl, (String) token);
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Token illisible, notifications natives désactivées", e);
+            }
+        });
+    }
+
     private boolean isNetworkAvailable() {
         ConnectivityManager cm = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
         if (cm == null) return false;
@@ -351,10 +700,17 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        openRouteFromIntent(intent);
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
         enableImmersiveMode();
+        NotificationService.stop(this);
         if (webView != null) {
             webView.onResume();
         }
@@ -364,6 +720,7 @@ public class MainActivity extends AppCompatActivity {
     protected void onPause() {
         super.onPause();
         if (webView != null) {
+            startBackgroundNotifications();
             webView.onPause();
         }
     }
@@ -377,5 +734,17 @@ public class MainActivity extends AppCompatActivity {
         if (nsdHelper != null) {
             nsdHelper.stopDiscovery();
         }
+        if (recovery != null) {
+            recovery.stop();
+        }
+        if (networkQuality != null) {
+            networkQuality.stop();
+        }
+        if (translationCache != null) {
+            translationCache.stop();
+        }
+        if (sessionStore != null) {
+            sessionStore.stop();
+        }
     }
 }
@@ -0,0 +1,47 @@
+package com.deltatx.logitrack;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * NativeUtils — Lecture de flux et compteurs partagés par les composants natifs
+ */
+final class NativeUtils {
+
+    // Compteurs et mesures exposés à la page via le bridge
+    static final String STATS_PREFS = "logitrack_stats";
+
+    private NativeUtils() {}
+
+    static SharedPreferences stats(Context context) {
+        return context.getSharedPreferences(STATS_PREFS, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Incrémente un compteur cumulé de logitrack_stats
+     */
+    static void count(SharedPreferences stats, String key) {
+        stats.edit().putInt(key, stats.getInt(key, 0) + 1).apply();
+    }
+
+    /**
+     * Lit le flux jusqu'au bout puis le ferme
+     */
+    static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        try {
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,339 @@
+package com.deltatx.logitrack;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Locale;
+
+/**
+ * NetworkQualityMonitor — Estimation native de la qualité du lien WiFi
+ * - Capacités réseau (transport, portail captif, débit estimé, RSSI)
+ * - RTT et débit mesurés sur les requêtes récentes (CompactApiClient, PhotoCache)
+ * - Bascule entre les modes full, lite (sans images, pages réduites, envois différés) et offline
+ */
+public class NetworkQualityMonitor {
+
+    private static final String TAG = "NetworkQuality";
+
+    public enum Mode {
+        FULL, LITE, OFFLINE;
+
+        public String id() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public interface Listener {
+        /** Appelé sur le thread principal à chaque changement de mode */
+        void onModeChanged(Mode mode, String reason);
+    }
+
+    // Seuils d'entrée en mode lite / de retour en mode full (hystérésis)
+    static final int LITE_RSSI = -75;                 // dBm
+    static final int FULL_RSSI = -70;
+    static final int LITE_BANDWIDTH_KBPS = 2000;
+    static final int FULL_BANDWIDTH_KBPS = 4000;
+    static final long LITE_RTT_MS = 800;
+    static final long FULL_RTT_MS = 400;
+    static final long LITE_THROUGHPUT_KBPS = 500;
+    static final long FULL_THROUGHPUT_KBPS = 1000;
+    static final int OFFLINE_FAILURES = 3;            // échecs réseau consécutifs
+
+    static final int UNKNOWN_RSSI = Integer.MIN_VALUE;
+    private static final int MIN_THROUGHPUT_BYTES = 16 * 1024;   // petites réponses : RTT seulement
+    private static final long SAMPLE_MAX_AGE = 2 * 60 * 1000;    // mesures ignorées après 2 min
+    static final long FAILURE_MAX_AGE = 60 * 1000;               // échecs oubliés après 1 min sans nouvel échec
+    private static final long EVALUATE_INTERVAL = 15000;         // 15 s
+    private static final double SMOOTHING = 0.3;                 // moyenne mobile exponentielle
+
+    /**
+     * Mesures — Instantané des indicateurs utilisés pour choisir le mode
+     */
+    static final class Measurements {
+        boolean connected = false;
+        boolean captivePortal = false;
+        int bandwidthKbps = 0;              // 0 = inconnu
+        int rssi = UNKNOWN_RSSI;
+        long rttMs = -1;                    // -1 = pas de mesure récente
+        long throughputKbps = -1;
+        int failures = 0;
+
+        String describe() {
+            return "connecté=" + connected
+                + (captivePortal ? ", portail captif" : "")
+                + ", rssi=" + (rssi == UNKNOWN_RSSI ? "?" : rssi + " dBm")
+                + ", débit estimé=" + (bandwidthKbps > 0 ? bandwidthKbps + " kbit/s" : "?")
+                + ", rtt=" + (rttMs >= 0 ? rttMs + " ms" : "?")
+                + ", débit mesuré=" + (throughputKbps >= 0 ? throughputKbps + " kbit/s" : "?")
+                + ", échecs=" + failures;
+        }
+    }
+
+    private final ConnectivityManager connectivity;
+    private final WifiManager wifi;
+    private final SharedPreferences stats;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Listener listener;
+
+    private boolean connected = false;
+    private boolean captivePortal = false;
+    private int bandwidthKbps = 0;
+    private int rssi = UNKNOWN_RSSI;
+    private double rttMs = -1;
+    private double throughputKbps = -1;
+    private long lastSampleAt = 0;
+    private int failures = 0;
+    private long lastFailureAt = 0;
+
+    private volatile Mode mode = Mode.FULL;
+    private volatile String reason = "";
+    private long modeSince = SystemClock.elapsedRealtime();
+    private boolean started = false;
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities caps) {
+            handler.post(() -> refreshCapabilities());
+        }
+
+        @Override
+        public void onLost(Network network) {
+            handler.post(() -> refreshCapabilities());
+        }
+    };
+
+    private final Runnable periodicEvaluate = new Runnable() {
+        @Override
+        public void run() {
+            refreshCapabilities();
+            handler.postDelayed(this, EVALUATE_INTERVAL);
+        }
+    };
+
+    public NetworkQualityMonitor(Context context, Listener listener) {
+        Context app = context.getApplicationContext();
+        this.connectivity = (ConnectivityManager) app.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.wifi = (WifiManager) app.getSystemService(Context.WIFI_SERVICE);
+        this.stats = NativeUtils.stats(app);
+        this.listener = listener;
+    }
+
+    public void start() {
+        if (started) return;
+        started = true;
+        try {
+            if (connectivity != null) connectivity.registerDefaultNetworkCallback(networkCallback);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Suivi des capacités réseau indisponible: " + e.getMessage());
+        }
+        refreshCapabilities();
+        handler.postDelayed(periodicEvaluate, EVALUATE_INTERVAL);
+    }
+
+    public void stop() {
+        if (!started) return;
+        started = false;
+        handler.removeCallbacks(periodicEvaluate);
+        try {
+            if (connectivity != null) connectivity.unregisterNetworkCallback(networkCallback);
+        } catch (RuntimeException ignored) {}
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    // ============================================
+    // Mesures
+    // ============================================
+
+    /**
+     * Lit le réseau actif : seuls le WiFi et l'Ethernet de l'usine comptent comme connectés
+     */
+    private void refreshCapabilities() {
+        NetworkCapabilities caps = null;
+        if (connectivity != null) {
+            Network network = connectivity.getActiveNetwork();
+            if (network != null) caps = connectivity.getNetworkCapabilities(network);
+        }
+
+        boolean isWifi = caps != null && caps.hasTransport(NetworkCapabilities.TRANSPORT_WIFI);
+        synchronized (this) {
+            connected = caps != null && (isWifi || caps.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET));
+            // NET_CAPABILITY_VALIDATED n'est pas utilisé : le réseau usine n'a souvent pas d'accès Internet
+            captivePortal = caps != null && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_CAPTIVE_PORTAL);
+            bandwidthKbps = caps != null ? caps.getLinkDownstreamBandwidthKbps() : 0;
+            rssi = isWifi ? readRssi(caps) : UNKNOWN_RSSI;
+        }
+        evaluate();
+    }
+
+    @SuppressWarnings("deprecation")
+    private int readRssi(NetworkCapabilities caps) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            int strength = caps.getSignalStrength();
+            return strength == NetworkCapabilities.SIGNAL_STRENGTH_UNSPECIFIED ? UNKNOWN_RSSI : strength;
+        }
+        try {
+            WifiInfo info = wifi != null ? wifi.getConnectionInfo() : null;
+            return info != null && info.getRssi() > -127 ? info.getRssi() : UNKNOWN_RSSI;
+        } catch (SecurityException e) {
+            return UNKNOWN_RSSI;
+        }
+    }
+
+    /**
+     * Requête aboutie (appelé depuis les threads réseau du WebView)
+     * @param rttMs délai jusqu'aux en-têtes de réponse
+     * @param bytes octets reçus sur le réseau
+     * @param transferMs durée de lecture du corps
+     */
+    public void recordSample(long rttMs, long bytes, long transferMs) {
+        synchronized (this) {
+            this.rttMs = smooth(this.rttMs, rttMs);
+            if (bytes >= MIN_THROUGHPUT_BYTES && transferMs > 0) {
+                this.throughputKbps = smooth(this.throughputKbps, bytes * 8 / transferMs);
+            }
+            lastSampleAt = SystemClock.elapsedRealtime();
+            failures = 0;
+        }
+        handler.post(this::evaluate);
+    }
+
+    /**
+     * Échec réseau (timeout, connexion refusée) sur une requête vers le serveur
+     */
+    public void recordFailure() {
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            // Des échecs anciens ne s'additionnent pas aux nouveaux : seuls les échecs rapprochés comptent
+            failures = now - lastFailureAt < FAILURE_MAX_AGE ? failures + 1 : 1;
+            lastFailureAt = now;
+        }
+        handler.post(this::evaluate);
+    }
+
+    /**
+     * Le serveur a répondu (health check ou page chargée) : les échecs passés ne comptent plus
+     */
+    public void onServerReachable() {
+        synchronized (this) {
+            failures = 0;
+        }
+        evaluate();
+    }
+
+    private static double smooth(double current, double sample) {
+        return current < 0 ? sample : current + SMOOTHING * (sample - current);
+    }
+
+    synchronized Measurements snapshot() {
+        Measurements m = new Measurements();
+        m.connected = connected;
+        m.captivePortal = captivePortal;
+        m.bandwidthKbps = bandwidthKbps;
+        m.rssi = rssi;
+        boolean fresh = lastSampleAt > 0 && SystemClock.elapsedRealtime() - lastSampleAt < SAMPLE_MAX_AGE;
+        m.rttMs = fresh && rttMs >= 0 ? Math.round(rttMs) : -1;
+        m.throughputKbps = fresh && throughputKbps >= 0 ? Math.round(throughputKbps) : -1;
+        // Plus aucun trafic en mode offline : sans nouvel échec, l'évaluation périodique laisse retenter le lien
+        m.failures = SystemClock.elapsedRealtime() - lastFailureAt < FAILURE_MAX_AGE ? failures : 0;
+        return m;
+    }
+
+    // ============================================
+    // Choix du mode
+    // ============================================
+
+    /**
+     * Raison du mode offline, ou null si le lien est utilisable
+     */
+    static String offlineReason(Measurements m) {
+        if (!m.connected) return "pas de réseau WiFi/Ethernet";
+        if (m.captivePortal) return "portail captif";
+        if (m.failures >= OFFLINE_FAILURES) return m.failures + " échecs réseau consécutifs";
+        return null;
+    }
+
+    /**
+     * Raison du mode lite, ou null si le lien permet le mode full.
+     * Un appareil déjà dégradé doit franchir les seuils « full », plus stricts, pour en sortir.
+     */
+    static String weakLinkReason(Measurements m, boolean degraded) {
+        int minRssi = degraded ? FULL_RSSI : LITE_RSSI;
+        int minBandwidth = degraded ? FULL_BANDWIDTH_KBPS : LITE_BANDWIDTH_KBPS;
+        long maxRtt = degraded ? FULL_RTT_MS : LITE_RTT_MS;
+        long minThroughput = degraded ? FULL_THROUGHPUT_KBPS : LITE_THROUGHPUT_KBPS;
+
+        if (m.rssi != UNKNOWN_RSSI && m.rssi < minRssi) return "signal faible (" + m.rssi + " dBm)";
+        if (m.bandwidthKbps > 0 && m.bandwidthKbps < minBandwidth) return "débit estimé " + m.bandwidthKbps + " kbit/s";
+        if (m.rttMs > maxRtt) return "RTT " + m.rttMs + " ms";
+        if (m.throughputKbps >= 0 && m.throughputKbps < minThroughput) return "débit mesuré " + m.throughputKbps + " kbit/s";
+        return null;
+    }
+
+    static Mode classify(Measurements m, Mode current) {
+        if (offlineReason(m) != null) return Mode.OFFLINE;
+        return weakLinkReason(m, current != Mode.FULL) != null ? Mode.LITE : Mode.FULL;
+    }
+
+    private void evaluate() {
+        Measurements m = snapshot();
+        Mode previous = mode;
+        Mode next = classify(m, previous);
+        if (next == previous) return;
+
+        String why = next == Mode.OFFLINE ? offlineReason(m)
+            : next == Mode.LITE ? weakLinkReason(m, false) : "lien rétabli";
+        if (why == null) why = "seuil de retour non atteint";
+
+        long now = SystemClock.elapsedRealtime();
+        Log.i(TAG, "Mode " + previous.id() + " → " + next.id() + " après " + (now - modeSince) / 1000
+            + " s : " + why + " [" + m.describe() + "]");
+
+        mode = next;
+        reason = why;
+        modeSince = now;
+        stats.edit()
+            .putInt("network_mode_switches", stats.getInt("network_mode_switches", 0) + 1)
+            .putString("network_mode_last_switch", previous.id() + " → " + next.id() + " : " + why)
+            .apply();
+
+        if (listener != null) listener.onModeChanged(next, why);
+    }
+
+    /**
+     * Mode courant et mesures (exposés à la page via le bridge)
+     */
+    public String getStatusJson() {
+        Measurements m = snapshot();
+        try {
+            return new JSONObject()
+                .put("mode", mode.id())
+                .put("reason", reason)
+                .put("sinceMs", SystemClock.elapsedRealtime() - modeSince)
+                .put("rssi", m.rssi == UNKNOWN_RSSI ? JSONObject.NULL : (Object) m.rssi)
+                .put("bandwidthKbps", m.bandwidthKbps > 0 ? (Object) m.bandwidthKbps : JSONObject.NULL)
+                .put("rttMs", m.rttMs >= 0 ? (Object) m.rttMs : JSONObject.NULL)
+                .put("throughputKbps", m.throughputKbps >= 0 ? (Object) m.throughputKbps : JSONObject.NULL)
+                .put("failures", m.failures)
+                .put("switches", stats.getInt("network_mode_switches", 0))
+                .toString();
+        } catch (JSONException e) {
+            return "{}";
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package com.deltatx.logitrack;
+
+import android.app.AlarmManager;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.content.ContextCompat;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * NotificationService — Service de premier plan actif quand MainActivity est en pause
+ * Garde une seule connexion SSE (/api/notifications/stream), regroupe les rafales
+ * d'événements en notifications système et programme les rappels de checklist
+ * à leur échéance exacte (aucun polling de /api/notifications)
+ */
+public class NotificationService extends Service {
+
+    private static final String TAG = "NotificationService";
+
+    public static final String EXTRA_SERVER_URL = "server_url";
+    public static final String EXTRA_TOKEN = "token";
+    public static final String EXTRA_ROUTE = "route";
+    private static final String ACTION_CHECKLIST_REMINDER = "com.deltatx.logitrack.CHECKLIST_REMINDER";
+    private static final String ACTION_UPDATE_TOKEN = "com.deltatx.logitrack.UPDATE_TOKEN";
+    private static final String NOTIFIED_PREFS = "logitrack_notifications";
+    private static final String PREF_NOTIFIED_ECHEANCES = "echeances_notifiees";
+
+    private static final String CHANNEL_SERVICE = "logitrack_service";
+    private static final String CHANNEL_ALERTS = "logitrack_alertes";
+    private static final String GROUP_KEY = "com.deltatx.logitrack.ALERTES";
+    private static final int FOREGROUND_ID = 1;
+    private static final int SUMMARY_ID = 2;
+
+    private static final int COALESCE_WINDOW = 3000;   // 3 s — regroupe les rafales
+    private static final int READ_TIMEOUT = 120000;    // 2 min (heartbeat serveur toutes les 45 s)
+    private static final int MAX_BACKOFF = 60000;      // 1 min
+
+    private static volatile boolean created = false;
+
+    /**
+     * Sleeper — Attente entre deux reconnexions du flux (remplacée par les tests)
+     */
+    interface Sleeper {
+        void sleep(long delayMs) throws InterruptedException;
+    }
+
+    static volatile Sleeper backoffSleeper = Thread::sleep;
+
+    private String serverUrl;
+    private volatile String token;
+    private volatile boolean running = false;
+    private Thread streamThread;
+    private HttpURLConnection connection;
+    private Handler mainHandler;
+    private final Random random = new Random();
+
+    // Événements en attente de regroupement
+    private final List<PendingEvent> pendingEvents = new ArrayList<>();
+    private final List<String> activeLines = new ArrayList<>();
+    private boolean flushScheduled = false;
+    private int nextNotificationId = 100;
+
+    // Échéances checklists (code → expiration) ; rappels déjà notifiés gardés dans NOTIFIED_PREFS
+    // (le service est recréé à chaque mise en pause de l'app)
+    private JSONArray checklistEcheances = new JSONArray();
+    private SharedPreferences notifiedPrefs;
+
+    // Mesures (réveils et coût réseau)
+    private long startedAt;
+    private volatile long bytesRead = 0;
+    private volatile CountingInputStream streamCounter;
+    private volatile int eventsReceived = 0;
+    private volatile int heartbeats = 0;
+    private volatile int reconnects = 0;
+    private int alarms = 0;
+    private int notificationsPosted = 0;
+
+    private static class PendingEvent {
+        final String title;
+        final String message;
+        final String route;
+
+        PendingEvent(String title, String message, String route) {
+            this.title = title;
+            this.message = message;
+            this.route = route;
+        }
+    }
+
+    /**
+     * Démarre le service (appelé depuis MainActivity.onPause)
+     * Android 12+ refuse un démarrage au premier plan depuis l'arrière-plan
+     * (ForegroundServiceStartNotAllowedException) : les notifications natives sont alors simplement absentes
+     */
+    public static void start(Context context, String serverUrl, String token) {
+        Intent intent = new Intent(context, NotificationService.class);
+        intent.putExtra(EXTRA_SERVER_URL, serverUrl);
+        intent.putExtra(EXTRA_TOKEN, token);
+        try {
+            ContextCompat.startForegroundService(context, intent);
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Démarrage du service refusé par le système", e);
+        }
+    }
+
+    /**
+     * Token renouvelé : transmis au service seulement s'il tourne déjà (jamais de démarrage depuis l'arrière-plan)
+     */
+    public static void updateToken(Context context, String token) {
+        if (!created || token == null) return;
+        Intent intent = new Intent(context, NotificationService.class)
+            .setAction(ACTION_UPDATE_TOKEN)
+            .putExtra(EXTRA_TOKEN, token);
+        try {
+            context.startService(intent);
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Token non transmis au service", e);
+        }
+    }
+
+    static boolean isCreated() {
+        return created;
+    }
+
+    /**
+     * Arrête le service (la WebView reprend la main dans MainActivity.onResume)
+     */
+    public static void stop(Context context) {
+        context.stopService(new Intent(context, NotificationService.class));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        created = true;
+        mainHandler = new Handler(Looper.getMainLooper());
+        startedAt = SystemClock.elapsedRealtime();
+        notifiedPrefs = getSharedPreferences(NOTIFIED_PREFS, MODE_PRIVATE);
+        createChannels();
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        startInForeground();
+
+        if (intent != null && ACTION_CHECKLIST_REMINDER.equals(intent.getAction())) {
+            if (serverUrl == null) {
+                // Processus tué depuis la programmation de l'alarme : plus d'échéances ni de flux, ne pas rester au premier plan
+                Log.i(TAG, "Rappel checklist sans session active, arrêt du service");
+                stopSelf();
+                return START_NOT_STICKY;
+            }
+            alarms++;
+            checkChecklistEcheances();
+            return START_NOT_STICKY;
+        }
+
+        if (intent != null && ACTION_UPDATE_TOKEN.equals(intent.getAction())) {
+            // Utilisé à la prochaine (re)connexion du flux ; la connexion en cours reste valide
+            String rotated = intent.getStringExtra(EXTRA_TOKEN);
+            if (rotated != null) token = rotated;
+            return START_NOT_STICKY;
+        }
+
+        if (intent != null && intent.getStringExtra(EXTRA_SERVER_URL) != null) {
+            serverUrl = intent.getStringExtra(EXTRA_SERVER_URL);
+            token = intent.getStringExtra(EXTRA_TOKEN);
+        }
+
+        if (serverUrl == null || token == null) {
+            Log.w(TAG, "Serveur ou token manquant, arrêt du service");
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+
+        if (!running) {
+            running = true;
+            streamThread = new Thread(this::streamLoop, "logitrack-sse");
+            streamThread.start();
+        }
+        return START_NOT_STICKY;
+    }
+
+    private void startInForeground() {
+        Notification notification = new NotificationCompat.Builder(this, CHANNEL_SERVICE)
+            .setSmallIcon(R.drawable.ic_notification)
+            .setContentTitle("LogiTrack")
+            .setContentText("Surveillance des alertes en arrière-plan")
+            .setPriority(NotificationCompat.PRIORITY_MIN)
+            .setOngoing(true)
+            .setContentIntent(buildRouteIntent("/", 0))
+            .build();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(FOREGROUND_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        } else {
+            startForeground(FOREGROUND_ID, notification);
+        }
+    }
+
+    private void createChannels() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return;
+
+        NotificationManager nm = getSystemService(NotificationManager.class);
+        if (nm == null) return;
+
+        NotificationChannel service = new NotificationChannel(
+            CHANNEL_SERVICE, "Service LogiTrack", NotificationManager.IMPORTANCE_MIN);
+        service.setShowBadge(false);
+        nm.createNotificationChannel(service);
+
+        NotificationChannel alerts = new NotificationChannel(
+            CHANNEL_ALERTS, "Alertes LogiTrack", NotificationManager.IMPORTANCE_HIGH);
+        alerts.enableVibration(true);
+        nm.createNotificationChannel(alerts);
+    }
+
+    // ============================================
+    // Connexion SSE (thread dédié)
+    // ============================================
+
+    private void streamLoop() {
+        int attempt = 0;
+        while (running) {
+            boolean connected = false;
+            try {
+                URL url = new URL(serverUrl + "/api/notifications/stream");
+                connection = (HttpURLConnection) url.openConnection();
+                connection.setRequestProperty("Authorization", "Bearer " + token);
+                connection.setRequestProperty("Accept", "text/event-stream");
+                connection.setConnectTimeout(10000);
+                connection.setReadTimeout(READ_TIMEOUT);
+
+                int code = connection.getResponseCode();
+                if (code == 401 || code == 403) {
+                    Log.w(TAG, "Token refusé par le serveur (" + code + "), arrêt du service");
+                    running = false;
+                    mainHandler.post(this::stopSelf);
+                    return;
+                }
+                if (code != 200) {
+                    throw new IOException("HTTP " + code);
+                }
+
+                connected = true;
+                attempt = 0;
+                Log.i(TAG, "Flux de notifications connecté");
+                streamCounter = new CountingInputStream(connection.getInputStream());
+                readEvents(streamCounter);
+            } catch (Exception e) {
+                if (running) {
+                    Log.w(TAG, "Flux interrompu: " + e.getMessage());
+                }
+            } finally {
+                if (streamCounter != null) {
+                    bytesRead += streamCounter.getCount();
+                    streamCounter = null;
+                }
+                if (connection != null) {
+                    connection.disconnect();
+                }
+            }
+
+            if (!running) break;
+
+            // Backoff exponentiel avec gigue pour éviter la ruée au redémarrage serveur
+            reconnects++;
+            if (!connected) attempt++;
+            long delay = Math.min(MAX_BACKOFF, 2000L << Math.min(attempt, 5)) + random.nextInt(2000);
+            try {
+                backoffSleeper.sleep(delay);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private void readEvents(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        String event = "message";
+        StringBuilder data = new StringBuilder();
+        String line;
+
+        while (running && (line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() > 0) {
+                    String payload = data.toString();
+                    String name = event;
+                    eventsReceived++;
+                    mainHandler.post(() -> handleEvent(name, payload));
+                }
+                event = "message";
+                data.setLength(0);
+            } else if (line.startsWith(":")) {
+                heartbeats++;
+            } else if (line.startsWith("event:")) {
+                event = line.substring(6).trim();
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0) data.append('\n');
+                data.append(line.substring(5).trim());
+            }
+        }
+    }
+
+    // ============================================
+    // Traitement des événements (thread principal)
+    // ============================================
+
+    private void handleEvent(String event, String payload) {
+        try {
+            switch (event) {
+                case "new_alert": {
+                    JSONObject data = new JSONObject(payload);
+                    // Alerte relayée d'un client non authentifié : jamais de route fournie par l'événement
+                    enqueue("🚨 Alerte LogiTrack", data.optString("message", "Nouvelle alerte"), "/");
+                    break;
+                }
+                case "notification": {
+                    JSONObject data = new JSONObject(payload);
+                    String route = data.has("tube_id") ? "/tubes?highlight=" + data.optInt("tube_id") : "/";
+                    enqueue(data.optString("titre", "LogiTrack"), data.optString("message", ""), route);
+                    break;
+                }
+                case "checklist_echeances":
+                    checklistEcheances = new JSONArray(payload);
+                    checkChecklistEcheances();
+                    break;
+                default:
+                    Log.d(TAG, "Événement ignoré: " + event);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Événement invalide (" + event + "): " + e.getMessage());
+        }
+    }
+
+    /**
+     * Notifie les checklists échues puis programme une seule alarme
+     * pour la prochaine échéance
+     */
+    private void checkChecklistEcheances() {
+        long now = System.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+        Set<String> notified = new HashSet<>(notifiedPrefs.getStringSet(PREF_NOTIFIED_ECHEANCES, new HashSet<String>()));
+        Set<String> current = new HashSet<>();
+
+        for (int i = 0; i < checklistEcheances.length(); i++) {
+            JSONObject item = checklistEcheances.optJSONObject(i);
+            if (item == null) continue;
+
+            // Checklist jamais validée : pas d'échéance, donc pas de rappel
+            String code = item.optString("code");
+            String expiration = item.isNull("date_expiration") ? null : item.optString("date_expiration");
+            long expiresAt = parseIsoDate(expiration);
+            if (expiresAt == 0) continue;
+            String key = code + "@" + expiration;
+            current.add(key);
+
+            if (expiresAt <= now) {
+                if (notified.add(key)) {
+                    enqueue("⏰ Checklist à renouveler",
+                        item.optString("nom", code) + " n'est plus valide",
+                        "/checklists/" + code.toLowerCase(Locale.ROOT).replace('_', '-'));
+                }
+            } else if (expiresAt < next) {
+                next = expiresAt;
+            }
+        }
+
+        // Oublier les échéances qui ne sont plus dans la liste (checklist revalidée)
+        if (checklistEcheances.length() > 0) notified.retainAll(current);
+        notifiedPrefs.edit().putStringSet(PREF_NOTIFIED_ECHEANCES, notified).apply();
+        scheduleChecklistAlarm(next);
+    }
+
+    private void scheduleChecklistAlarm(long triggerAt) {
+        AlarmManager am = (AlarmManager) getSystemService(ALARM_SERVICE);
+        if (am == null) return;
+
+        Intent intent = new Intent(this, NotificationService.class).setAction(ACTION_CHECKLIST_REMINDER);
+        PendingIntent pi = PendingIntent.getService(this, 0, intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        am.cancel(pi);
+        if (triggerAt != Long.MAX_VALUE) {
+            am.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, pi);
+        }
+    }
+
+    private void enqueue(String title, String message, String route) {
+        pendingEvents.add(new PendingEvent(title, message, route));
+        if (!flushScheduled) {
+            flushScheduled = true;
+            mainHandler.postDelayed(this::flushNotifications, COALESCE_WINDOW);
+        }
+    }
+
+    /**
+     * Publie les événements accumulés en un groupe de notifications
+     */
+    private void flushNotifications() {
+        flushScheduled = false;
+        if (pendingEvents.isEmpty()) return;
+
+        NotificationManagerCompat nm = NotificationManagerCompat.from(this);
+        if (!nm.areNotificationsEnabled()) {
+            Log.w(TAG, pendingEvents.size() + " notification(s) ignorée(s): permission refusée");
+            pendingEvents.clear();
+            return;
+        }
+
+        try {
+            for (PendingEvent e : pendingEvents) {
+                int id = nextNotificationId++;
+                nm.notify(id, new NotificationCompat.Builder(this, CHANNEL_ALERTS)
+                    .setSmallIcon(R.drawable.ic_notification)
+                    .setContentTitle(e.title)
+                    .setContentText(e.message)
+                    .setStyle(new NotificationCompat.BigTextStyle().bigText(e.message))
+                    .setPriority(NotificationCompat.PRIORITY_HIGH)
+                    .setGroup(GROUP_KEY)
+                    .setAutoCancel(true)
+                    .setContentIntent(buildRouteIntent(e.route, id))
+                    .build());
+                activeLines.add(e.title);
+                notificationsPosted++;
+            }
+
+            if (activeLines.size() > 1) {
+                NotificationCompat.InboxStyle inbox = new NotificationCompat.InboxStyle()
+                    .setSummaryText(activeLines.size() + " alertes");
+                for (int i = Math.max(0, activeLines.size() - 5); i < activeLines.size(); i++) {
+                    inbox.addLine(activeLines.get(i));
+                }
+                nm.notify(SUMMARY_ID, new NotificationCompat.Builder(this, CHANNEL_ALERTS)
+                    .setSmallIcon(R.drawable.ic_notification)
+                    .setContentTitle("LogiTrack")
+                    .setContentText(activeLines.size() + " nouvelles alertes")
+                    .setStyle(inbox)
+                    .setGroup(GROUP_KEY)
+                    .setGroupSummary(true)
+                    .setAutoCancel(true)
+                    .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY)
+                    .setContentIntent(buildRouteIntent("/", SUMMARY_ID))
+                    .build());
+            }
+        } catch (SecurityException e) {
+            Log.w(TAG, "Notification refusée: " + e.getMessage());
+        }
+
+        pendingEvents.clear();
+        logStats();
+    }
+
+    /**
+     * Route interne à l'app uniquement : chemin absolu, sans hôte (« //hote », « @hote ») ni antislash
+     */
+    static boolean isSafeRoute(String route) {
+        return route != null && route.startsWith("/") && !route.startsWith("//")
+            && route.indexOf('\\') < 0 && route.indexOf('@') < 0;
+    }
+
+    private PendingIntent buildRouteIntent(String route, int requestCode) {
+        Intent intent = new Intent(this, MainActivity.class);
+        intent.putExtra(EXTRA_ROUTE, isSafeRoute(route) ? route : "/");
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        return PendingIntent.getActivity(this, requestCode, intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    private static long parseIsoDate(String value) {
+        if (value == null || value.isEmpty()) return 0;
+        try {
+            SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+            fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+            return fmt.parse(value).getTime();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private void logStats() {
+        long minutes = Math.max(1, (SystemClock.elapsedRealtime() - startedAt) / 60000);
+        int wakeups = eventsReceived + heartbeats + reconnects + alarms;
+        CountingInputStream counter = streamCounter;
+        long bytes = bytesRead + (counter != null ? counter.getCount() : 0);
+        Log.i(TAG, "Stats: " + minutes + " min, " + bytes + " octets, "
+            + eventsReceived + " événements, " + heartbeats + " heartbeats, "
+            + reconnects + " reconnexions, " + alarms + " alarmes, "
+            + notificationsPosted + " notifications, "
+            + String.format(Locale.ROOT, "%.1f", wakeups / (double) minutes) + " réveils/min");
+    }
+
+    @Override
+    public void onDestroy() {
+        created = false;
+        running = false;
+        mainHandler.removeCallbacksAndMessages(null);
+        scheduleChecklistAlarm(Long.MAX_VALUE);
+        if (streamThread != null) {
+            streamThread.interrupt();
+        }
+        // Couper la connexion depuis un thread réseau pour débloquer readLine()
+        final HttpURLConnection conn = connection;
+        if (conn != null) {
+            new Thread(conn::disconnect).start();
+        }
+        logStats();
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
@@ -20,6 +20,7 @@ public class NsdHelper {
     private NsdManager.DiscoveryListener discoveryListener;
     private boolean isDiscovering = false;
     private DiscoveryCallback callback;
+    private AnnounceCallback announceCallback;
     private Handler mainHandler;
     private Handler timeoutHandler;
     private Runnable timeoutRunnable;
@@ -29,6 +30,10 @@ public class NsdHelper {
         void onDiscoveryFailed();
     }
 
+    public interface AnnounceCallback {
+        void onServerAnnounced(String host, int port);
+    }
+
     public NsdHelper(Context context) {
         nsdManager = (NsdManager) context.getSystemService(Context.NSD_SERVICE);
         mainHandler = new Handler(Looper.getMainLooper());
@@ -40,6 +45,7 @@ public class NsdHelper {
      */
     public void discoverServer(DiscoveryCallback callback, int timeoutMs) {
         this.callback = callback;
+        this.announceCallback = null;
 
         // Timeout de sécurité
         timeoutRunnable = () -> {
@@ -66,6 +72,30 @@ public class NsdHelper {
         }
     }
 
+    /**
+     * Écoute continue (sans timeout) des annonces mDNS du serveur,
+     * utilisée pendant une panne pour détecter son redémarrage
+     */
+    public void watchServer(AnnounceCallback announceCallback) {
+        stopDiscovery();
+        this.callback = null;
+        this.announceCallback = announceCallback;
+
+        initializeDiscoveryListener();
+
+        try {
+            nsdManager.discoverServices(SERVICE_TYPE, NsdManager.PROTOCOL_DNS_SD, discoveryListener);
+            isDiscovering = true;
+            Log.d(TAG, "Écoute des annonces mDNS pour " + SERVICE_TYPE);
+        } catch (Exception e) {
+            Log.e(TAG, "Erreur au lancement de l'écoute mDNS", e);
+        }
+    }
+
+    public boolean isDiscovering() {
+        return isDiscovering;
+    }
+
     private void initializeDiscoveryListener() {
         discoveryListener = new NsdManager.DiscoveryListener() {
             @Override
@@ -91,6 +121,16 @@ public class NsdHelper {
                             int port = resolvedInfo.getPort();
                             Log.i(TAG, "Serveur LogiTrack trouvé: " + host + ":" + port);
 
+                            if (announceCallback != null) {
+                                // Mode écoute : signaler l'annonce sans arrêter la découverte
+                                mainHandler.post(() -> {
+                                    if (announceCallback != null) {
+                                        announceCallback.onServerAnnounced(host, port);
+                                    }
+                                });
+                                return;
+                            }
+
                             cancelTimeout();
                             stopDiscovery();
 
@@ -0,0 +1,437 @@
+package com.deltatx.logitrack;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PhotoCache — Cache disque natif des photos /uploads (protégées par authenticateToken)
+ * - Original téléchargé une seule fois avec le token, puis servi directement depuis le fichier
+ * - Miniatures générées nativement (inSampleSize + réutilisation de bitmaps) selon ?w=,
+ *   redressées selon l'orientation EXIF (photos prises tablette tournée)
+ * - Taille disque et mémoire bornées
+ * - En mode lite/offline, seules les photos déjà en cache sont servies
+ * - Une copie disque n'est servie qu'avec une session native valide (SessionStore) :
+ *   le ?token= de la page n'est vérifié que par le serveur, au téléchargement
+ */
+public class PhotoCache implements RequestInterceptor {
+
+    private static final String TAG = "PhotoCache";
+
+    // Largeurs de miniature servies (le paramètre ?w= est arrondi au palier supérieur)
+    static final int[] THUMB_WIDTHS = { 160, 320, 640 };
+    private static final long MAX_ORIGINALS_BYTES = 150L * 1024 * 1024; // 150 Mo
+    private static final long MAX_THUMBS_BYTES = 30L * 1024 * 1024;     // 30 Mo
+    private static final int THUMB_QUALITY = 80;
+
+    // Vignette neutre servie à la place d'une photo non encore téléchargée (mode lite/offline)
+    private static final byte[] PLACEHOLDER = ("<svg xmlns='http://www.w3.org/2000/svg' width='160' height='120'>"
+        + "<rect width='100%' height='100%' fill='#e5e7eb'/></svg>").getBytes(Charset.forName("UTF-8"));
+    private static final File PLACEHOLDER_FILE = new File("placeholder");
+
+    private final String serverUrl;
+    private final File originalsDir;
+    private final File thumbsDir;
+    private final BitmapPool bitmapPool = new BitmapPool(8L * 1024 * 1024); // 8 Mo
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+    private volatile NetworkQualityMonitor quality;
+    private volatile SessionStore session;
+
+    public PhotoCache(Context context, String serverUrl) {
+        this.serverUrl = serverUrl;
+        File root = new File(context.getCacheDir(), "photos");
+        this.originalsDir = new File(root, "originals");
+        this.thumbsDir = new File(root, "thumbs");
+        originalsDir.mkdirs();
+        thumbsDir.mkdirs();
+    }
+
+    /**
+     * Mode réseau (lite/offline : pas de téléchargement) et mesures des téléchargements
+     */
+    public void setQualityMonitor(NetworkQualityMonitor quality) {
+        this.quality = quality;
+    }
+
+    /**
+     * Session native : token utilisé quand la page n'en fournit pas (balise <img> sans ?token=)
+     */
+    public void setSessionStore(SessionStore session) {
+        this.session = session;
+    }
+
+    @Override
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        if (serverUrl == null || !"GET".equalsIgnoreCase(request.getMethod())) return null;
+
+        Uri uri = request.getUrl();
+        String path = uri.getPath();
+        if (!uri.toString().startsWith(serverUrl) || path == null || !path.startsWith("/uploads/")) {
+            return null;
+        }
+
+        String token = uri.getQueryParameter("token");
+        if (token == null) {
+            String auth = request.getRequestHeaders().get("Authorization");
+            if (auth != null && auth.startsWith("Bearer ")) token = auth.substring(7);
+        }
+        SessionStore s = session;
+        if (token == null && s != null) token = s.getToken();
+        if (token == null) return null;
+        boolean authenticated = s != null && s.isActive();
+
+        try {
+            String key = sha1(path);
+            File original = new File(originalsDir, key);
+
+            File served;
+            while (true) {
+                Object lock = new Object();
+                Object current = locks.putIfAbsent(key, lock);
+                if (current != null) lock = current;
+
+                synchronized (lock) {
+                    // Verrou retiré entre-temps par le thread précédent : reprendre avec le verrou courant
+                    if (locks.get(key) != lock) continue;
+                    try {
+                        served = obtain(original, key, path, token, authenticated, uri.getQueryParameter("w"));
+                    } finally {
+                        locks.remove(key, lock);
+                    }
+                }
+                break;
+            }
+            if (served == null) return null;
+            if (served == PLACEHOLDER_FILE) return placeholder();
+
+            served.setLastModified(System.currentTimeMillis());
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Cache-Control", "private, max-age=86400");
+            headers.put("Content-Length", String.valueOf(served.length()));
+            String mime = served == original ? mimeType(path) : "image/jpeg";
+            return new WebResourceResponse(mime, null, 200, "OK", headers, new FileInputStream(served));
+        } catch (Exception e) {
+            Log.w(TAG, "Photo non mise en cache (" + path + "): " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fichier à servir (original ou miniature), PLACEHOLDER_FILE en mode dégradé, null si indisponible.
+     * Appelé sous le verrou de la photo.
+     */
+    private File obtain(File original, String key, String path, String token, boolean authenticated,
+                        String widthHint) throws IOException {
+        if (original.exists()) {
+            // Sans session valide, la copie disque contournerait le contrôle du serveur
+            if (!authenticated) return null;
+        } else {
+            NetworkQualityMonitor q = quality;
+            if (q != null && q.getMode() != NetworkQualityMonitor.Mode.FULL) {
+                return PLACEHOLDER_FILE;
+            }
+            if (!download(path, token, original)) return null;
+        }
+
+        int width = thumbWidth(widthHint);
+        if (width > 0) {
+            File thumb = new File(thumbsDir, key + "_" + width + ".jpg");
+            if (thumb.exists() || createThumbnail(original, thumb, width)) {
+                return thumb;
+            }
+        }
+        return original;
+    }
+
+    private static WebResourceResponse placeholder() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Cache-Control", "no-store");
+        return new WebResourceResponse("image/svg+xml", "UTF-8", 200, "OK", headers,
+            new ByteArrayInputStream(PLACEHOLDER));
+    }
+
+    private boolean download(String path, String token, File target) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(serverUrl + path).openConnection();
+        conn.setConnectTimeout(10000);
+        conn.setReadTimeout(30000);
+        conn.setRequestProperty("Authorization", "Bearer " + token);
+        NetworkQualityMonitor q = quality;
+        try {
+            long started = SystemClock.elapsedRealtime();
+            int code;
+            try {
+                code = conn.getResponseCode();
+            } catch (IOException e) {
+                if (q != null) q.recordFailure();
+                throw e;
+            }
+            long headersAt = SystemClock.elapsedRealtime();
+            if (code != 200) {
+                Log.w(TAG, "Téléchargement refusé " + path + " (HTTP " + code + ")");
+                return false;
+            }
+
+            File tmp = new File(target.getPath() + ".tmp");
+            long received = 0;
+            try (InputStream in = conn.getInputStream(); OutputStream out = new FileOutputStream(tmp)) {
+                byte[] buffer = new byte[16384];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                    received += n;
+                }
+            }
+            if (q != null) q.recordSample(headersAt - started, received, SystemClock.elapsedRealtime() - headersAt);
+            if (!tmp.renameTo(target)) {
+                tmp.delete();
+                return false;
+            }
+        } finally {
+            conn.disconnect();
+        }
+
+        trim(originalsDir, MAX_ORIGINALS_BYTES);
+        return true;
+    }
+
+    /**
+     * Décodage sous-échantillonné (jamais l'image pleine résolution en mémoire)
+     */
+    private boolean createThumbnail(File original, File thumb, int width) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(original.getPath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return false;
+
+        // Largeur affichée : une photo tournée de 90° s'affiche avec sa hauteur comme largeur
+        int orientation = readOrientation(original);
+        int displayedWidth = swapsDimensions(orientation) ? bounds.outHeight : bounds.outWidth;
+
+        // Image déjà assez petite : servir l'original (le WebView applique lui-même l'EXIF)
+        if (displayedWidth <= width) return false;
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = computeInSampleSize(displayedWidth, width);
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        int w = (bounds.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+        int h = (bounds.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+        options.inBitmap = bitmapPool.get(w * h * 2);
+
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeFile(original.getPath(), options);
+        } catch (IllegalArgumentException e) {
+            // Bitmap réutilisé incompatible : décoder sans réutilisation
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeFile(original.getPath(), options);
+        }
+        if (bitmap == null) return false;
+
+        // Le JPEG de la miniature n'a pas d'EXIF : appliquer l'orientation aux pixels
+        Bitmap oriented = bitmap;
+        Matrix matrix = orientationMatrix(orientation);
+        if (matrix != null) {
+            oriented = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        }
+
+        File tmp = new File(thumb.getPath() + ".tmp");
+        boolean ok;
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            ok = oriented.compress(Bitmap.CompressFormat.JPEG, THUMB_QUALITY, out);
+        } catch (IOException e) {
+            ok = false;
+        } finally {
+            if (oriented != bitmap) oriented.recycle();
+            bitmapPool.put(bitmap);
+        }
+
+        if (!ok || !tmp.renameTo(thumb)) {
+            tmp.delete();
+            return false;
+        }
+        trim(thumbsDir, MAX_THUMBS_BYTES);
+        return true;
+    }
+
+    private static int readOrientation(File file) {
+        try {
+            return new ExifInterface(file.getPath())
+                .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    static boolean swapsDimensions(int orientation) {
+        return orientation == ExifInterface.ORIENTATION_ROTATE_90
+            || orientation == ExifInterface.ORIENTATION_ROTATE_270
+            || orientation == ExifInterface.ORIENTATION_TRANSPOSE
+            || orientation == ExifInterface.ORIENTATION_TRANSVERSE;
+    }
+
+    /**
+     * Transformation qui redresse l'image selon le tag EXIF (null = rien à faire)
+     */
+    static Matrix orientationMatrix(int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                return null;
+        }
+        return matrix;
+    }
+
+    /**
+     * Plus grande puissance de 2 qui garde une largeur ≥ à la cible
+     */
+    static int computeInSampleSize(int sourceWidth, int targetWidth) {
+        int sample = 1;
+        while (sourceWidth / (sample * 2) >= targetWidth) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    /**
+     * Arrondit l'indice ?w= au palier de miniature supérieur (0 = original)
+     */
+    static int thumbWidth(String hint) {
+        if (hint == null) return 0;
+        int requested;
+        try {
+            requested = Integer.parseInt(hint);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        if (requested <= 0) return 0;
+        for (int w : THUMB_WIDTHS) {
+            if (requested <= w) return w;
+        }
+        return 0;
+    }
+
+    /**
+     * Supprime les fichiers les moins récemment utilisés au-delà de la limite
+     */
+    private static synchronized void trim(File dir, long maxBytes) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+
+        long total = 0;
+        for (File f : files) total += f.length();
+        if (total <= maxBytes) return;
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : files) {
+            if (total <= maxBytes) break;
+            total -= f.length();
+            f.delete();
+        }
+    }
+
+    private static String mimeType(String path) {
+        String lower = path.toLowerCase();
+        if (lower.endsWith(".png")) return "image/png";
+        if (lower.endsWith(".webp")) return "image/webp";
+        if (lower.endsWith(".gif")) return "image/gif";
+        if (lower.endsWith(".pdf")) return "application/pdf";
+        return "image/jpeg";
+    }
+
+    private static String sha1(String value) throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-1").digest(value.getBytes("UTF-8"));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hash) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    /**
+     * BitmapPool — Réserve bornée de bitmaps mutables réutilisés via inBitmap
+     */
+    static class BitmapPool {
+        private final long maxBytes;
+        private final List<Bitmap> pool = new ArrayList<>();
+        private long currentBytes = 0;
+
+        BitmapPool(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized Bitmap get(int minBytes) {
+            Iterator<Bitmap> it = pool.iterator();
+            while (it.hasNext()) {
+                Bitmap b = it.next();
+                if (b.getAllocationByteCount() >= minBytes) {
+                    it.remove();
+                    currentBytes -= b.getAllocationByteCount();
+                    return b;
+                }
+            }
+            return null;
+        }
+
+        synchronized void put(Bitmap bitmap) {
+            if (!bitmap.isMutable() || bitmap.getAllocationByteCount() > maxBytes) {
+                bitmap.recycle();
+                return;
+            }
+            pool.add(bitmap);
+            currentBytes += bitmap.getAllocationByteCount();
+            while (currentBytes > maxBytes && !pool.isEmpty()) {
+                Bitmap evicted = pool.remove(0);
+                currentBytes -= evicted.getAllocationByteCount();
+                evicted.recycle();
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.deltatx.logitrack;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * RecoveryCoordinator — Reconnexion coordonnée après une panne ou un redémarrage serveur
+ * - Backoff exponentiel avec gigue + décalage propre à chaque tablette (pas de ruée simultanée)
+ * - Vérification légère /api/health avant tout rechargement complet de la page
+ * - Réveil anticipé quand le serveur se ré-annonce en mDNS (NsdHelper)
+ * - Mesure du nombre de tentatives et de la durée de récupération
+ */
+public class RecoveryCoordinator {
+
+    private static final String TAG = "RecoveryCoordinator";
+
+    static final long BASE_DELAY = 5000;        // 5 s
+    static final long MAX_DELAY = 60000;        // 1 min
+    static final long DEVICE_SPREAD = 5000;     // décalage par tablette : 0 à 5 s
+    private static final int HEALTH_TIMEOUT = 4000;
+
+    public interface Listener {
+        /** Le serveur répond : charger la page complète */
+        void onServerHealthy();
+
+        /** Prochaine tentative programmée (pour le compte à rebours de la page d'erreur) */
+        void onRetryScheduled(long delayMs, int attempt);
+    }
+
+    private final String serverUrl;
+    private final Listener listener;
+    private final SharedPreferences stats;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Random random = new Random();
+    private final long deviceOffset;
+
+    private boolean recovering = false;
+    private boolean checking = false;
+    private int attempt = 0;
+    private long failedAt = 0;
+    private final Runnable scheduledCheck = this::checkHealth;
+
+    public RecoveryCoordinator(Context context, String serverUrl, Listener listener) {
+        this.serverUrl = serverUrl;
+        this.listener = listener;
+        this.stats = NativeUtils.stats(context);
+        this.deviceOffset = computeDeviceOffset(deviceId(context));
+    }
+
+    /**
+     * Délai avant la tentative n : backoff exponentiel plafonné, moitié fixe + moitié aléatoire,
+     * plus un décalage stable propre à l'appareil
+     */
+    static long computeDelay(int attempt, long deviceOffset, Random random) {
+        long backoff = Math.min(MAX_DELAY, BASE_DELAY << Math.min(attempt, 4));
+        long half = backoff / 2;
+        return half + (long) (random.nextDouble() * half) + deviceOffset;
+    }
+
+    static long computeDeviceOffset(String deviceId) {
+        return Math.abs((long) deviceId.hashCode()) % DEVICE_SPREAD;
+    }
+
+    private String deviceId(Context context) {
+        String id = Settings.Secure.getString(context.getContentResolver(), Settings.Secure.ANDROID_ID);
+        if (id == null || id.isEmpty()) {
+            id = stats.getString("device_id", null);
+            if (id == null) {
+                id = UUID.randomUUID().toString();
+                stats.edit().putString("device_id", id).apply();
+            }
+        }
+        return id;
+    }
+
+    public boolean isRecovering() {
+        return recovering;
+    }
+
+    /**
+     * La page n'a pas pu être chargée : programmer la prochaine vérification
+     */
+    public void onFailure() {
+        if (!recovering) {
+            recovering = true;
+            attempt = 0;
+            failedAt = SystemClock.elapsedRealtime();
+            Log.i(TAG, "Serveur injoignable, décalage appareil " + deviceOffset + " ms");
+        }
+        if (!checking) {
+            schedule(computeDelay(attempt, deviceOffset, random));
+        }
+    }
+
+    /**
+     * Bouton « Réessayer maintenant » ou swipe : vérification immédiate (geste humain, pas de gigue)
+     */
+    public void retryNow() {
+        handler.removeCallbacks(scheduledCheck);
+        checkHealth();
+    }
+
+    /**
+     * Le serveur s'est ré-annoncé en mDNS : vérifier après le seul décalage de l'appareil
+     */
+    public void onServerAnnounced() {
+        if (!recovering || checking) return;
+        Log.i(TAG, "Ré-annonce mDNS reçue, vérification dans " + deviceOffset + " ms");
+        schedule(deviceOffset + random.nextInt(1000));
+    }
+
+    /**
+     * Le lien réseau est revenu : toutes les tablettes le voient en même temps (redémarrage
+     * d'un point d'accès), vérifier après le seul décalage de l'appareil, comme pour une ré-annonce
+     */
+    public void onLinkRestored() {
+        if (!recovering || checking) return;
+        Log.i(TAG, "Lien réseau rétabli, vérification dans " + deviceOffset + " ms");
+        schedule(deviceOffset + random.nextInt(1000));
+    }
+
+    /**
+     * Page LogiTrack chargée : fin de la récupération
+     */
+    public void onRecovered() {
+        handler.removeCallbacks(scheduledCheck);
+        if (!recovering) return;
+        recovering = false;
+
+        long durationMs = SystemClock.elapsedRealtime() - failedAt;
+        stats.edit()
+            .putInt("recovery_count", stats.getInt("recovery_count", 0) + 1)
+            .putLong("recovery_last_ms", durationMs)
+            .putInt("recovery_last_retries", attempt)
+            .putInt("retries_total", stats.getInt("retries_total", 0) + attempt)
+            .putLong("recovery_max_ms", Math.max(durationMs, stats.getLong("recovery_max_ms", 0)))
+            .apply();
+        Log.i(TAG, "Récupération en " + durationMs + " ms après " + attempt + " tentative(s)");
+    }
+
+    private void schedule(long delayMs) {
+        handler.removeCallbacks(scheduledCheck);
+        handler.postDelayed(scheduledCheck, delayMs);
+        listener.onRetryScheduled(delayMs, attempt + 1);
+    }
+
+    private void checkHealth() {
+        if (checking) return;
+        checking = true;
+        attempt++;
+
+        executor.execute(() -> {
+            boolean healthy = false;
+            HttpURLConnection conn = null;
+            try {
+                conn = (HttpURLConnection) new URL(serverUrl + "/api/health").openConnection();
+                conn.setConnectTimeout(HEALTH_TIMEOUT);
+                conn.setReadTimeout(HEALTH_TIMEOUT);
+                conn.setRequestProperty("X-LogiTrack-Retry", String.valueOf(attempt));
+                healthy = conn.getResponseCode() == 200;
+            } catch (Exception e) {
+                Log.d(TAG, "Health check échoué: " + e.getMessage());
+            } finally {
+                if (conn != null) conn.disconnect();
+            }
+
+            final boolean ok = healthy;
+            handler.post(() -> {
+                checking = false;
+                if (ok) {
+                    listener.onServerHealthy();
+                } else if (recovering) {
+                    schedule(computeDelay(attempt, deviceOffset, random));
+                } else {
+                    onFailure();
+                }
+            });
+        });
+    }
+
+    /**
+     * Statistiques de récupération (exposées à la page via le bridge)
+     */
+    public String getStatsJson() {
+        try {
+            return new JSONObject()
+                .put("recovering", recovering)
+                .put("currentRetries", recovering ? attempt : 0)
+                .put("deviceOffsetMs", deviceOffset)
+                .put("recoveryCount", stats.getInt("recovery_count", 0))
+                .put("lastRecoveryMs", stats.getLong("recovery_last_ms", 0))
+                .put("lastRecoveryRetries", stats.getInt("recovery_last_retries", 0))
+                .put("maxRecoveryMs", stats.getLong("recovery_max_ms", 0))
+                .put("retriesTotal", stats.getInt("retries_total", 0))
+                .toString();
+        } catch (JSONException e) {
+            return "{}";
+        }
+    }
+
+    public void stop() {
+        handler.removeCallbacks(scheduledCheck);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,16 @@
+package com.deltatx.logitrack;
+
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+/**
+ * RequestInterceptor — Maillon de la chaîne WebViewClient.shouldInterceptRequest de MainActivity
+ */
+interface RequestInterceptor {
+
+    /**
+     * Appelé depuis WebViewClient.shouldInterceptRequest (thread réseau du WebView)
+     * Retourne null pour laisser le WebView (ou le maillon suivant) traiter la requête normalement
+     */
+    WebResourceResponse intercept(WebResourceRequest request);
+}
@@ -0,0 +1,424 @@
+package com.deltatx.logitrack;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * SessionStore — Session LogiTrack gardée par l'app (token JWT + profil)
+ * - Chiffrée par une clé AES-GCM de l'Android Keystore (jamais en clair sur le disque)
+ * - Restaurée dans la page au démarrage : pas de nouveau passage par /api/auth après un redémarrage
+ * - Renouvelée en arrière-plan aux 3/4 de sa durée de vie (POST /api/auth/refresh)
+ * - Mesure du temps entre le lancement et le premier écran authentifié
+ */
+public class SessionStore {
+
+    private static final String TAG = "SessionStore";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String PREFS = "logitrack_session";
+    private static final String PREF_DATA = "data";
+    private static final String KEY_ALIAS = "logitrack_session";
+
+    static final double REFRESH_RATIO = 0.75;           // renouvellement aux 3/4 de la durée de vie
+    static final long RETRY_DELAY = 5 * 60 * 1000;      // 5 min si le serveur ne répond pas
+    static final long MIN_DELAY = 1000;
+
+    public interface Listener {
+        /** Appelé sur le thread principal : nouveau token, ou null si la session est terminée */
+        void onSessionChanged(String token);
+    }
+
+    /**
+     * Crypto — Chiffrement de la session (Keystore en production, remplaçable dans les tests)
+     */
+    interface Crypto {
+        byte[] encrypt(byte[] plain) throws GeneralSecurityException;
+
+        byte[] decrypt(byte[] data) throws GeneralSecurityException;
+    }
+
+    /**
+     * KeystoreCrypto — AES-256-GCM, clé non exportable générée dans l'Android Keystore
+     * Format : IV (12 octets) + texte chiffré
+     */
+    static final class KeystoreCrypto implements Crypto {
+        private static final int IV_LENGTH = 12;
+
+        private SecretKey key() throws GeneralSecurityException {
+            try {
+                KeyStore keyStore = KeyStore.getInstance("AndroidKeyStore");
+                keyStore.load(null);
+                KeyStore.Entry entry = keyStore.getEntry(KEY_ALIAS, null);
+                if (entry instanceof KeyStore.SecretKeyEntry) {
+                    return ((KeyStore.SecretKeyEntry) entry).getSecretKey();
+                }
+            } catch (IOException e) {
+                throw new GeneralSecurityException(e);
+            }
+            KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, "AndroidKeyStore");
+            generator.init(new KeyGenParameterSpec.Builder(KEY_ALIAS,
+                    KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+            return generator.generateKey();
+        }
+
+        @Override
+        public byte[] encrypt(byte[] plain) throws GeneralSecurityException {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key());
+            byte[] iv = cipher.getIV();
+            byte[] encrypted = cipher.doFinal(plain);
+            byte[] out = new byte[iv.length + encrypted.length];
+            System.arraycopy(iv, 0, out, 0, iv.length);
+            System.arraycopy(encrypted, 0, out, iv.length, encrypted.length);
+            return out;
+        }
+
+        @Override
+        public byte[] decrypt(byte[] data) throws GeneralSecurityException {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key(), new GCMParameterSpec(128, data, 0, IV_LENGTH));
+            return cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH);
+        }
+    }
+
+    private final String serverUrl;
+    private final SharedPreferences prefs;
+    private final SharedPreferences stats;
+    private final Crypto crypto;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Runnable scheduledRefresh = this::refresh;
+    private volatile Listener listener;
+
+    private String token;
+    private String userJson;
+    private long issuedAt;      // ms epoch
+    private long expiresAt;     // ms epoch
+    private boolean refreshing = false;
+    private boolean restored = false;
+
+    public SessionStore(Context context, String serverUrl) {
+        this(context, serverUrl, new KeystoreCrypto());
+    }
+
+    SessionStore(Context context, String serverUrl, Crypto crypto) {
+        this.serverUrl = serverUrl;
+        this.crypto = crypto;
+        this.prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        this.stats = NativeUtils.stats(context);
+        load();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Session enregistrée ? (sans déchiffrer : utilisé par le splash pour raccourcir l'attente)
+     */
+    public static boolean hasSavedSession(Context context) {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE).contains(PREF_DATA);
+    }
+
+    public synchronized String getToken() {
+        return token;
+    }
+
+    /**
+     * Session présente et non expirée (autorise les copies locales servies sans passer par le serveur)
+     */
+    public synchronized boolean isActive() {
+        return token != null && expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * Session restaurée pour la page : {"token", "user"}, "" si aucune
+     */
+    public synchronized String getSessionJson() {
+        if (token == null) return "";
+        JSONObject session = new JSONObject();
+        try {
+            session.put("token", token);
+            if (userJson != null) session.put("user", new JSONObject(userJson));
+        } catch (JSONException e) {
+            // Profil illisible : la page le redemande à /api/auth/me
+        }
+        return session.toString();
+    }
+
+    // ============================================
+    // Enregistrement (appelé par la page après connexion)
+    // ============================================
+
+    /**
+     * Nouvelle session ou profil mis à jour ; un token illisible ou déjà expiré est refusé
+     */
+    public boolean save(String newToken, String newUserJson) {
+        long[] claims = parseClaims(newToken);
+        if (claims == null || claims[1] <= System.currentTimeMillis()) {
+            Log.w(TAG, "Token refusé (illisible ou expiré)");
+            return false;
+        }
+        synchronized (this) {
+            boolean changed = !newToken.equals(token);
+            token = newToken;
+            if (newUserJson != null && !newUserJson.isEmpty()) userJson = newUserJson;
+            issuedAt = claims[0];
+            expiresAt = claims[1];
+            persist();
+            if (!changed) return true;
+        }
+        handler.post(this::scheduleRefresh);
+        return true;
+    }
+
+    public void clear() {
+        synchronized (this) {
+            token = null;
+            userJson = null;
+            issuedAt = 0;
+            expiresAt = 0;
+            restored = false;
+            prefs.edit().remove(PREF_DATA).apply();
+        }
+        handler.removeCallbacks(scheduledRefresh);
+    }
+
+    private void load() {
+        String data = prefs.getString(PREF_DATA, null);
+        if (data == null) return;
+        try {
+            JSONObject session = new JSONObject(new String(crypto.decrypt(Base64.decode(data, Base64.NO_WRAP)), UTF8));
+            String savedToken = session.getString("token");
+            long[] claims = parseClaims(savedToken);
+            if (!session.optString("server").equals(serverUrl) || claims == null || claims[1] <= System.currentTimeMillis()) {
+                // Autre serveur ou session expirée : une connexion est nécessaire
+                Log.i(TAG, "Session enregistrée expirée ou d'un autre serveur, supprimée");
+                prefs.edit().remove(PREF_DATA).apply();
+                return;
+            }
+            token = savedToken;
+            userJson = session.has("user") ? session.getString("user") : null;
+            issuedAt = claims[0];
+            expiresAt = claims[1];
+            restored = true;
+        } catch (Exception e) {
+            // Clé Keystore perdue (restauration, changement de verrouillage) ou données corrompues
+            Log.w(TAG, "Session illisible, supprimée: " + e.getMessage());
+            prefs.edit().remove(PREF_DATA).apply();
+        }
+    }
+
+    private void persist() {
+        try {
+            JSONObject session = new JSONObject()
+                .put("server", serverUrl)
+                .put("token", token);
+            if (userJson != null) session.put("user", userJson);
+            byte[] encrypted = crypto.encrypt(session.toString().getBytes(UTF8));
+            prefs.edit().putString(PREF_DATA, Base64.encodeToString(encrypted, Base64.NO_WRAP)).apply();
+        } catch (Exception e) {
+            // Jamais de repli en clair : la session reste en mémoire pour ce lancement uniquement
+            Log.w(TAG, "Session non enregistrée (Keystore indisponible): " + e.getMessage());
+            prefs.edit().remove(PREF_DATA).apply();
+        }
+    }
+
+    /**
+     * Dates iat / exp du JWT en ms (payload seulement, la signature est vérifiée par le serveur)
+     */
+    static long[] parseClaims(String jwt) {
+        if (jwt == null) return null;
+        String[] parts = jwt.split("\\.");
+        if (parts.length != 3) return null;
+        try {
+            JSONObject payload = new JSONObject(new String(
+                Base64.decode(parts[1], Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP), UTF8));
+            if (!payload.has("exp")) return null;
+            long exp = payload.getLong("exp") * 1000;
+            long iat = payload.has("iat") ? payload.getLong("iat") * 1000 : exp - 24 * 3600 * 1000L;
+            return new long[] { iat, exp };
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Date du renouvellement : aux 3/4 de la durée de vie du token
+     */
+    static long refreshAt(long issuedAt, long expiresAt) {
+        return issuedAt + (long) ((expiresAt - issuedAt) * REFRESH_RATIO);
+    }
+
+    // ============================================
+    // Renouvellement en arrière-plan
+    // ============================================
+
+    public void start() {
+        scheduleRefresh();
+    }
+
+    private void scheduleRefresh() {
+        long delay;
+        synchronized (this) {
+            if (token == null) return;
+            delay = refreshAt(issuedAt, expiresAt) - System.currentTimeMillis();
+        }
+        handler.removeCallbacks(scheduledRefresh);
+        handler.postDelayed(scheduledRefresh, Math.max(MIN_DELAY, delay));
+    }
+
+    private void retryLater() {
+        long delay;
+        synchronized (this) {
+            if (token == null) return;
+            delay = Math.min(RETRY_DELAY, (expiresAt - System.currentTimeMillis()) / 2);
+        }
+        handler.removeCallbacks(scheduledRefresh);
+        handler.postDelayed(scheduledRefresh, Math.max(MIN_DELAY, delay));
+    }
+
+    void refresh() {
+        final String current;
+        synchronized (this) {
+            if (token == null || refreshing) return;
+            refreshing = true;
+            current = token;
+        }
+
+        executor.execute(() -> {
+            int code = -1;
+            String next = null;
+            HttpURLConnection conn = null;
+            try {
+                conn = (HttpURLConnection) new URL(serverUrl + "/api/auth/refresh").openConnection();
+                conn.setConnectTimeout(5000);
+                conn.setReadTimeout(15000);
+                conn.setRequestMethod("POST");
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Authorization", "Bearer " + current);
+                conn.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write("{}".getBytes(UTF8));
+                }
+                code = conn.getResponseCode();
+                if (code == 200) {
+                    next = new JSONObject(new String(NativeUtils.readAll(conn.getInputStream()), UTF8)).optString("token", null);
+                }
+            } catch (Exception e) {
+                Log.d(TAG, "Renouvellement de session impossible: " + e.getMessage());
+            } finally {
+                if (conn != null) conn.disconnect();
+            }
+
+            final int status = code;
+            final String rotated = next;
+            handler.post(() -> onRefreshResult(current, status, rotated));
+        });
+    }
+
+    private void onRefreshResult(String sent, int status, String rotated) {
+        boolean ended = false;
+        synchronized (this) {
+            refreshing = false;
+            // La page a changé de session entre-temps (déconnexion, autre opérateur) : résultat ignoré
+            if (!sent.equals(token)) return;
+            if (status == 401 || status == 403) ended = true;
+        }
+
+        if (rotated != null && save(rotated, null)) {
+            stats.edit()
+                .putInt("session_refresh_count", stats.getInt("session_refresh_count", 0) + 1)
+                .putLong("session_last_refresh", System.currentTimeMillis())
+                .apply();
+            Log.i(TAG, "Session renouvelée");
+            Listener l = listener;
+            if (l != null) l.onSessionChanged(rotated);
+        } else if (ended) {
+            Log.i(TAG, "Session refusée par le serveur (" + status + "), reconnexion nécessaire");
+            clear();
+            Listener l = listener;
+            if (l != null) l.onSessionChanged(null);
+        } else {
+            retryLater();
+        }
+    }
+
+    // ============================================
+    // Temps de lancement
+    // ============================================
+
+    /**
+     * Premier écran authentifié affiché : durée depuis le lancement, avec ou sans session restaurée
+     */
+    public void recordLaunch(long durationMs) {
+        boolean fromSession;
+        synchronized (this) {
+            fromSession = restored;
+        }
+        String prefix = fromSession ? "launch_restored" : "launch_login";
+        stats.edit()
+            .putLong("launch_auth_last_ms", durationMs)
+            .putInt(prefix + "_count", stats.getInt(prefix + "_count", 0) + 1)
+            .putLong(prefix + "_total_ms", stats.getLong(prefix + "_total_ms", 0) + durationMs)
+            .apply();
+        Log.i(TAG, "Écran authentifié en " + durationMs + " ms ("
+            + (fromSession ? "session restaurée" : "connexion") + ")");
+    }
+
+    /**
+     * État de la session et compteurs (exposés à la page via le bridge)
+     */
+    public String getStatusJson() {
+        try {
+            JSONObject status = new JSONObject();
+            synchronized (this) {
+                status.put("active", token != null)
+                    .put("restored", restored)
+                    .put("expiresAt", expiresAt);
+            }
+            int restoredCount = stats.getInt("launch_restored_count", 0);
+            int loginCount = stats.getInt("launch_login_count", 0);
+            return status
+                .put("refreshCount", stats.getInt("session_refresh_count", 0))
+                .put("lastLaunchMs", stats.getLong("launch_auth_last_ms", 0))
+                .put("avgRestoredLaunchMs", restoredCount > 0 ? stats.getLong("launch_restored_total_ms", 0) / restoredCount : 0)
+                .put("avgLoginLaunchMs", loginCount > 0 ? stats.getLong("launch_login_total_ms", 0) / loginCount : 0)
+                .toString();
+        } catch (JSONException e) {
+            return "{}";
+        }
+    }
+
+    public void stop() {
+        handler.removeCallbacks(scheduledRefresh);
+        executor.shutdownNow();
+    }
+}
@@ -21,6 +21,7 @@ import androidx.core.splashscreen.SplashScreen;
 public class SplashActivity extends AppCompatActivity {
 
     private static final int SPLASH_DURATION = 2000; // 2 secondes
+    private static final int SPLASH_DURATION_SESSION = 300; // session enregistrée : retour direct à l'écran de travail
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -55,7 +56,8 @@ public class SplashActivity extends AppCompatActivity {
         title.startAnimation(fadeInText);
         subtitle.startAnimation(fadeInText);
 
-        // Rediriger après le splash
+        // Rediriger après le splash (raccourci si une session est enregistrée)
+        int duration = SessionStore.hasSavedSession(this) ? SPLASH_DURATION_SESSION : SPLASH_DURATION;
         new Handler(Looper.getMainLooper()).postDelayed(() -> {
             SharedPreferences prefs = getSharedPreferences("logitrack_config", MODE_PRIVATE);
             String serverUrl = prefs.getString("server_url", null);
@@ -71,6 +73,6 @@ public class SplashActivity extends AppCompatActivity {
             startActivity(intent);
             finish();
             overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
-        }, SPLASH_DURATION);
+        }, duration);
     }
 }
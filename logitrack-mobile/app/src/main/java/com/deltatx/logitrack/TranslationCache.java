@@ -0,0 +1,361 @@
+package com.deltatx.logitrack;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * TranslationCache — Bundles de traductions par langue gardés sur l'appareil
+ * - /api/langues/traductions/:code servi immédiatement depuis le disque
+ * - Liste /api/langues servie depuis le disque puis rafraîchie en arrière-plan
+ *   (aussi lue par le premier rendu pour la direction RTL/LTR)
+ * - Mise à jour en arrière-plan par delta (GET /api/langues/bundle/:code?since=version)
+ * - Version vérifiée localement (même hash que backend/src/utils/translationBundles.js)
+ */
+public class TranslationCache implements RequestInterceptor {
+
+    private static final String TAG = "TranslationCache";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Pattern TRANSLATIONS_ROUTE = Pattern.compile("^/api/langues/traductions/([A-Za-z_-]{2,10})/?$");
+    private static final String LANGUES_ROUTE = "/api/langues";
+
+    public interface Listener {
+        /** Appelé depuis un thread d'arrière-plan quand le bundle d'une langue a changé */
+        void onTranslationsUpdated(String langue);
+    }
+
+    /**
+     * Bundle — Traductions d'une langue et leur version serveur
+     */
+    static final class Bundle {
+        final String version;
+        final Map<String, String> traductions;
+
+        Bundle(String version, Map<String, String> traductions) {
+            this.version = version;
+            this.traductions = traductions;
+        }
+    }
+
+    private final String serverUrl;
+    private final File dir;
+    private final SharedPreferences stats;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<String, Bundle> bundles = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile Listener listener;
+
+    public TranslationCache(Context context, String serverUrl) {
+        this.serverUrl = serverUrl;
+        this.dir = new File(context.getFilesDir(), "i18n");
+        this.stats = NativeUtils.stats(context);
+        dir.mkdirs();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        if (serverUrl == null || !"GET".equalsIgnoreCase(request.getMethod())) return null;
+
+        Uri uri = request.getUrl();
+        String path = uri.getPath();
+        if (!uri.toString().startsWith(serverUrl) || path == null) return null;
+
+        try {
+            if (LANGUES_ROUTE.equals(path) || (LANGUES_ROUTE + "/").equals(path)) {
+                // Copie disque d'abord : un serveur injoignable ne bloque pas le chargement de la page ;
+                // une modification de l'admin est visible au chargement suivant
+                byte[] langues = readFile(languesFile());
+                if (langues == null) {
+                    langues = fetchLangues();
+                } else {
+                    refreshLanguesAsync();
+                }
+                return langues != null ? json(langues) : null;
+            }
+
+            Matcher m = TRANSLATIONS_ROUTE.matcher(path);
+            if (!m.matches()) return null;
+            String code = m.group(1);
+
+            Bundle bundle = getBundle(code);
+            if (bundle == null) {
+                // Premier lancement dans cette langue : bundle complet, attendu par la page
+                bundle = refresh(code);
+                if (bundle == null) return null;
+            } else {
+                NativeUtils.count(stats, "i18n_hits");
+                refreshAsync(code);
+            }
+            return json(toResponse(code, bundle).toString().getBytes(UTF8));
+        } catch (Exception e) {
+            Log.w(TAG, "Traductions non servies depuis le cache (" + path + "): " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Traductions en cache pour le premier rendu de la page (bridge synchrone), "" si absentes
+     */
+    public String getCachedBundleJson(String code) {
+        Bundle bundle = getBundle(code);
+        if (bundle == null) return "";
+        try {
+            return toResponse(code, bundle).toString();
+        } catch (JSONException e) {
+            return "";
+        }
+    }
+
+    public String getCachedLanguesJson() {
+        byte[] langues = readFile(languesFile());
+        return langues != null ? new String(langues, UTF8) : "";
+    }
+
+    // ============================================
+    // Bundles sur disque
+    // ============================================
+
+    Bundle getBundle(String code) {
+        Bundle bundle = bundles.get(code);
+        if (bundle != null) return bundle;
+
+        byte[] raw = readFile(bundleFile(code));
+        if (raw == null) return null;
+        try {
+            JSONObject obj = new JSONObject(new String(raw, UTF8));
+            bundle = new Bundle(obj.getString("version"), toMap(obj.getJSONObject("traductions")));
+            bundles.put(code, bundle);
+            return bundle;
+        } catch (JSONException e) {
+            Log.w(TAG, "Bundle " + code + " illisible, supprimé");
+            bundleFile(code).delete();
+            return null;
+        }
+    }
+
+    private void refreshAsync(String code) {
+        if (!refreshing.add(code)) return;
+        executor.execute(() -> {
+            try {
+                refresh(code);
+            } finally {
+                refreshing.remove(code);
+            }
+        });
+    }
+
+    /**
+     * Met à jour le bundle : delta si la version locale est connue du serveur, sinon bundle complet
+     */
+    Bundle refresh(String code) {
+        Bundle current = getBundle(code);
+        try {
+            JSONObject body = fetchBundle(code, current != null ? current.version : null);
+            if (body == null) return current;
+
+            Bundle next = apply(current, body);
+            if (!next.version.equals(computeVersion(next.traductions))) {
+                // Delta incohérent avec la version annoncée : repartir d'un bundle complet
+                Log.w(TAG, "Version " + code + " incohérente après delta, rechargement complet");
+                body = fetchBundle(code, null);
+                if (body == null) return current;
+                next = apply(null, body);
+            }
+
+            if (current != null && current.version.equals(next.version)) return current;
+
+            JSONObject stored = new JSONObject()
+                .put("version", next.version)
+                .put("traductions", new JSONObject(next.traductions));
+            writeFile(bundleFile(code), stored.toString().getBytes(UTF8));
+            bundles.put(code, next);
+            count(body.optBoolean("full", true) ? "i18n_full" : "i18n_deltas");
+            Log.i(TAG, "Traductions " + code + " → version " + next.version
+                + (body.optBoolean("full", true) ? " (complet, " : " (delta, ")
+                + next.traductions.size() + " clés)");
+
+            Listener l = listener;
+            if (l != null && current != null) l.onTranslationsUpdated(code);
+            return next;
+        } catch (Exception e) {
+            Log.d(TAG, "Mise à jour des traductions " + code + " impossible: " + e.getMessage());
+            return current;
+        }
+    }
+
+    static Bundle apply(Bundle current, JSONObject body) throws JSONException {
+        Map<String, String> traductions;
+        if (current == null || body.optBoolean("full", true)) {
+            traductions = toMap(body.getJSONObject("traductions"));
+        } else {
+            traductions = new HashMap<>(current.traductions);
+            traductions.putAll(toMap(body.optJSONObject("changes")));
+            JSONArray removed = body.optJSONArray("removed");
+            for (int i = 0; removed != null && i < removed.length(); i++) {
+                traductions.remove(removed.getString(i));
+            }
+        }
+        return new Bundle(body.getString("version"), traductions);
+    }
+
+    /**
+     * Hash du contenu — identique à computeVersion() côté backend
+     */
+    static String computeVersion(Map<String, String> traductions) {
+        try {
+            List<String> keys = new ArrayList<>(traductions.keySet());
+            Collections.sort(keys);
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            for (String key : keys) {
+                sha1.update((key + "\u0000" + traductions.get(key) + "\u0001").getBytes(UTF8));
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : sha1.digest()) sb.append(String.format("%02x", b));
+            return sb.substring(0, 16);
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    private static JSONObject toResponse(String code, Bundle bundle) throws JSONException {
+        return new JSONObject()
+            .put("langue", code)
+            .put("version", bundle.version)
+            .put("traductions", new JSONObject(bundle.traductions));
+    }
+
+    private static Map<String, String> toMap(JSONObject obj) throws JSONException {
+        Map<String, String> map = new HashMap<>();
+        if (obj == null) return map;
+        Iterator<String> keys = obj.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, obj.isNull(key) ? "" : obj.getString(key));
+        }
+        return map;
+    }
+
+    // ============================================
+    // Réseau
+    // ============================================
+
+    private JSONObject fetchBundle(String code, String since) throws IOException, JSONException {
+        String url = serverUrl + "/api/langues/bundle/" + URLEncoder.encode(code, "UTF-8")
+            + (since != null ? "?since=" + URLEncoder.encode(since, "UTF-8") : "");
+        byte[] body = get(url);
+        return body != null ? new JSONObject(new String(body, UTF8)) : null;
+    }
+
+    private void refreshLanguesAsync() {
+        if (!refreshing.add(LANGUES_ROUTE)) return;
+        executor.execute(() -> {
+            try {
+                fetchLangues();
+            } finally {
+                refreshing.remove(LANGUES_ROUTE);
+            }
+        });
+    }
+
+    private byte[] fetchLangues() {
+        try {
+            byte[] body = get(serverUrl + LANGUES_ROUTE);
+            if (body != null) writeFile(languesFile(), body);
+            return body;
+        } catch (IOException e) {
+            Log.d(TAG, "Liste des langues indisponible: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] get(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(5000);
+        conn.setReadTimeout(15000);
+        try {
+            if (conn.getResponseCode() != 200) return null;
+            return NativeUtils.readAll(conn.getInputStream());
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static WebResourceResponse json(byte[] body) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Cache-Control", "no-cache");
+        return new WebResourceResponse("application/json", "UTF-8", 200, "OK", headers,
+            new ByteArrayInputStream(body));
+    }
+
+    // ============================================
+    // Fichiers
+    // ============================================
+
+    private File bundleFile(String code) {
+        return new File(dir, code + ".json");
+    }
+
+    private File languesFile() {
+        return new File(dir, "langues.json");
+    }
+
+    private static byte[] readFile(File file) {
+        if (!file.exists()) return null;
+        try {
+            return NativeUtils.readAll(new FileInputStream(file));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static synchronized void writeFile(File file, byte[] data) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(data);
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Écriture impossible: " + file.getName());
+        }
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,118 @@
+package com.deltatx.logitrack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Calendar;
+
+/**
+ * CompactApiClient — mode compact (gzip + colonnes) contre le serveur simulé
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class CompactApiClientTest {
+
+    private static final String AUTH = "Bearer token-test";
+
+    private MockLogiTrackServer server;
+    private CompactApiClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockLogiTrackServer().start();
+        Context context = ApplicationProvider.getApplicationContext();
+        context.getSharedPreferences("logitrack_stats", Context.MODE_PRIVATE).edit().clear().commit();
+        client = new CompactApiClient(context, server.getUrl());
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void hotRoute_isDecodedBackToPlainJson() throws Exception {
+        WebResourceResponse response = client.intercept(TestUtils.request("GET", server.getUrl() + "/api/tubes", AUTH));
+
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCode());
+        assertEquals(MockLogiTrackServer.buildTubes(50, 12).toString(), TestUtils.readString(response.getData()));
+
+        JSONObject stats = new JSONObject(client.getShiftStats());
+        assertEquals(1, stats.getInt("requests"));
+        assertTrue("Pas de gain sur le réseau", stats.getLong("wireBytes") < stats.getLong("jsonBytes") / 4);
+    }
+
+    @Test
+    public void otherRoutesAndMethods_areNotIntercepted() {
+        assertNull(client.intercept(TestUtils.request("POST", server.getUrl() + "/api/tubes", AUTH)));
+        assertNull(client.intercept(TestUtils.request("GET", server.getUrl() + "/api/health", AUTH)));
+        assertNull(client.intercept(TestUtils.request("GET", server.getUrl() + "/api/tubes/5/pdf", AUTH)));
+        assertNull(client.intercept(TestUtils.request("GET", "http://10.0.0.9:3002/api/tubes", AUTH)));
+    }
+
+    @Test
+    public void serverError_isPassedThroughToPage() throws Exception {
+        server.setMode(MockLogiTrackServer.Mode.FLAKY);
+
+        WebResourceResponse response = client.intercept(TestUtils.request("GET", server.getUrl() + "/api/bobines", AUTH));
+
+        assertNotNull(response);
+        assertEquals(503, response.getStatusCode());
+    }
+
+    @Test
+    public void conditionalRequest_stillServedWithBody() throws Exception {
+        // Réponse compressée (gzip + colonnes) : l'ETag du corps non compressé est toujours envoyé
+        WebResourceResponse first = client.intercept(TestUtils.request("GET", server.getUrl() + "/api/tubes", AUTH));
+        String etag = first.getResponseHeaders().get("ETag");
+        assertNotNull(etag);
+
+        // Le WebView revalide sa copie : sans cache côté client, un 304 ne pourrait pas être servi
+        WebResourceRequest revalidation = TestUtils.request("GET", server.getUrl() + "/api/tubes", AUTH);
+        revalidation.getRequestHeaders().put("If-None-Match", etag);
+        WebResourceResponse response = client.intercept(revalidation);
+
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCode());
+        assertEquals(MockLogiTrackServer.buildTubes(50, 12).toString(), TestUtils.readString(response.getData()));
+    }
+
+    @Test
+    public void expand_largePage_withinBudget() throws Exception {
+        Object columns = MockLogiTrackServer.toColumns(MockLogiTrackServer.buildTubes(200, 12));
+        String expected = MockLogiTrackServer.buildTubes(200, 12).toString();
+
+        long start = System.nanoTime();
+        Object expanded = CompactApiClient.expand(columns);
+        PerfBudget.check("compact_decode_ms", PerfBudget.elapsedMs(start));
+
+        assertEquals(expected, expanded.toString());
+    }
+
+    @Test
+    public void nightShift_belongsToPreviousDay() {
+        Calendar at = Calendar.getInstance();
+        at.set(2026, Calendar.MARCH, 10, 3, 0);
+        assertEquals("2026-03-09/nuit", CompactApiClient.currentShift(at));
+
+        at.set(2026, Calendar.MARCH, 10, 15, 0);
+        assertEquals("2026-03-10/apres-midi", CompactApiClient.currentShift(at));
+    }
+}
@@ -0,0 +1,149 @@
+package com.deltatx.logitrack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Looper;
+import android.view.View;
+import android.widget.Button;
+import android.widget.EditText;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowToast;
+
+import java.time.Duration;
+
+/**
+ * ConfigActivity — découverte mDNS et validation /api/health contre le serveur simulé
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class ConfigActivityTest {
+
+    private MockLogiTrackServer server;
+    private ActivityController<ConfigActivity> controller;
+    private ConfigActivity activity;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockLogiTrackServer().start();
+        controller = Robolectric.buildActivity(ConfigActivity.class).setup();
+        activity = controller.get();
+    }
+
+    @After
+    public void tearDown() {
+        controller.pause().stop().destroy();
+        server.stop();
+    }
+
+    private SharedPreferences prefs() {
+        return activity.getSharedPreferences("logitrack_config", Context.MODE_PRIVATE);
+    }
+
+    private void connectManually() {
+        activity.findViewById(R.id.btn_manual).performClick();
+        ((EditText) activity.findViewById(R.id.et_server_ip)).setText("127.0.0.1");
+        ((EditText) activity.findViewById(R.id.et_server_port)).setText(String.valueOf(server.getPort()));
+        activity.findViewById(R.id.btn_connect).performClick();
+    }
+
+    private boolean connectButtonEnabled() {
+        return activity.findViewById(R.id.btn_connect).isEnabled();
+    }
+
+    @Test
+    public void discoveryTimeout_showsRetryButton() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(9));
+
+        assertEquals(View.VISIBLE, activity.findViewById(R.id.btn_retry).getVisibility());
+        assertEquals(View.GONE, activity.findViewById(R.id.btn_use_found).getVisibility());
+    }
+
+    @Test
+    public void manualConnect_validServer_savesConfigAndOpensMain() throws Exception {
+        long start = System.nanoTime();
+        connectManually();
+        TestUtils.waitFor("MainActivity lancée",
+            () -> shadowOf(activity).peekNextStartedActivity() != null, 3000);
+        PerfBudget.check("health_validation_ms", PerfBudget.elapsedMs(start));
+
+        Intent next = shadowOf(activity).getNextStartedActivity();
+        assertEquals(MainActivity.class.getName(), next.getComponent().getClassName());
+        assertEquals(server.getUrl(), prefs().getString("server_url", null));
+        assertEquals("127.0.0.1", prefs().getString("last_ip", null));
+        assertEquals(server.getPort(), prefs().getInt("last_port", 0));
+    }
+
+    @Test
+    public void manualConnect_slowServer_staysWithinBudget() throws Exception {
+        server.setMode(MockLogiTrackServer.Mode.SLOW);
+        server.setLatency(1000);
+
+        long start = System.nanoTime();
+        connectManually();
+        TestUtils.waitFor("MainActivity lancée (serveur lent)",
+            () -> shadowOf(activity).peekNextStartedActivity() != null, 6000);
+        PerfBudget.check("health_validation_slow_ms", PerfBudget.elapsedMs(start));
+    }
+
+    @Test
+    public void manualConnect_foreignServer_isRejected() throws Exception {
+        server.setMode(MockLogiTrackServer.Mode.FOREIGN);
+
+        connectManually();
+        TestUtils.waitFor("bouton réactivé", this::connectButtonEnabled, 3000);
+
+        assertNull(prefs().getString("server_url", null));
+        assertNull(shadowOf(activity).peekNextStartedActivity());
+        assertTrue(ShadowToast.getTextOfLatestToast().contains("n'est pas un serveur LogiTrack"));
+    }
+
+    @Test
+    public void manualConnect_degradedServer_isRejected() throws Exception {
+        server.setMode(MockLogiTrackServer.Mode.DEGRADED);
+
+        connectManually();
+        TestUtils.waitFor("bouton réactivé", this::connectButtonEnabled, 3000);
+
+        assertNull(prefs().getString("server_url", null));
+    }
+
+    @Test
+    public void manualConnect_flakyServer_succeedsOnSecondAttempt() throws Exception {
+        server.setMode(MockLogiTrackServer.Mode.FLAKY);
+
+        connectManually();
+        TestUtils.waitFor("premier essai rejeté", this::connectButtonEnabled, 3000);
+        assertNull(prefs().getString("server_url", null));
+
+        ((Button) activity.findViewById(R.id.btn_connect)).performClick();
+        TestUtils.waitFor("MainActivity lancée au second essai",
+            () -> shadowOf(activity).peekNextStartedActivity() != null, 3000);
+        assertNotNull(prefs().getString("server_url", null));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void manualConnect_unreachableServer_showsError() throws Exception {
+        server.stop();
+
+        connectManually();
+        TestUtils.waitFor("bouton réactivé", this::connectButtonEnabled, 6000);
+
+        assertTrue(ShadowToast.getTextOfLatestToast().contains("Impossible de joindre"));
+    }
+}
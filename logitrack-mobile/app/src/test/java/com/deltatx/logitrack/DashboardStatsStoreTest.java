@@ -0,0 +1,127 @@
+package com.deltatx.logitrack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import android.webkit.WebResourceResponse;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * DashboardStatsStore — chiffres servis localement tant que la révision serveur ne change pas
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class DashboardStatsStoreTest {
+
+    private MockLogiTrackServer server;
+    private DashboardStatsStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockLogiTrackServer().start();
+        store = new DashboardStatsStore(ApplicationProvider.getApplicationContext(), server.getUrl());
+        store.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    private String statsUrl() {
+        return server.getUrl() + "/api/dashboard/stats";
+    }
+
+    @Test
+    public void sameRevision_servedLocallyWithoutRecomputing() throws Exception {
+        WebResourceResponse first = store.intercept(TestUtils.get(statsUrl(), "Bearer t"));
+        assertEquals("server", first.getResponseHeaders().get("X-LogiTrack-Stats-Source"));
+        assertEquals(12, TestUtils.readJson(first).getJSONObject("tubes").getInt("en_cours"));
+
+        // Dans la fenêtre de 5 s : aucune requête réseau
+        WebResourceResponse second = store.intercept(TestUtils.get(statsUrl(), "Bearer t"));
+        assertEquals("local", second.getResponseHeaders().get("X-LogiTrack-Stats-Source"));
+        assertEquals(1, server.getDashboardRequests().size());
+
+        // Après 5 s : seule la révision est vérifiée
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(6));
+        WebResourceResponse third = store.intercept(TestUtils.get(statsUrl(), "Bearer t"));
+        assertEquals("local", third.getResponseHeaders().get("X-LogiTrack-Stats-Source"));
+        List<String> requests = server.getDashboardRequests();
+        assertEquals(2, requests.size());
+        assertEquals("/api/dashboard/revision", requests.get(1));
+    }
+
+    @Test
+    public void revisionChange_refetchesStats() throws Exception {
+        TestUtils.readJson(store.intercept(TestUtils.get(statsUrl(), "Bearer t")));
+        server.setStatsRevision("boot.1.20260101");
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(6));
+        WebResourceResponse response = store.intercept(TestUtils.get(statsUrl(), "Bearer t"));
+        assertEquals("server", response.getResponseHeaders().get("X-LogiTrack-Stats-Source"));
+        assertEquals("boot.1.20260101", TestUtils.readJson(response).getString("revision_calculee"));
+        assertEquals("boot.1.20260101", new JSONObject(store.getStatusJson()).getString("revision"));
+    }
+
+    @Test
+    public void broadcastRevision_refetchesWithinCheckWindow() throws Exception {
+        TestUtils.readJson(store.intercept(TestUtils.get(statsUrl(), "Bearer t")));
+        server.setStatsRevision("boot.1.20260101");
+
+        // stats_changed reçu par la page : pas d'attente de la vérification suivante
+        store.onRevisionChanged("boot.1.20260101");
+        WebResourceResponse response = store.intercept(TestUtils.get(statsUrl(), "Bearer t"));
+        assertEquals("server", response.getResponseHeaders().get("X-LogiTrack-Stats-Source"));
+        assertEquals("boot.1.20260101", TestUtils.readJson(response).getString("revision_calculee"));
+        assertEquals(2, server.getDashboardRequests().size());
+    }
+
+    @Test
+    public void reconcileInterval_forcesFullReload() throws Exception {
+        TestUtils.readJson(store.intercept(TestUtils.get(statsUrl(), "Bearer t")));
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMinutes(6));
+        WebResourceResponse response = store.intercept(TestUtils.get(statsUrl(), "Bearer t"));
+        assertEquals("server", response.getResponseHeaders().get("X-LogiTrack-Stats-Source"));
+    }
+
+    @Test
+    public void serverDown_keepsLastNumbers() throws Exception {
+        TestUtils.readJson(store.intercept(TestUtils.get(statsUrl(), "Bearer t")));
+        server.stop();
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(6));
+        WebResourceResponse response = store.intercept(TestUtils.get(statsUrl(), "Bearer t"));
+        assertEquals("stale", response.getResponseHeaders().get("X-LogiTrack-Stats-Source"));
+        assertEquals(40, TestUtils.readJson(response).getJSONObject("tubes").getInt("termines"));
+    }
+
+    @Test
+    public void disabledOrUnauthenticated_notIntercepted() throws Exception {
+        assertNull(store.intercept(TestUtils.get(statsUrl(), null)));
+        assertNull(store.intercept(TestUtils.get(statsUrl() + "?etape=CND", "Bearer t")));
+        assertNull(store.intercept(TestUtils.get(server.getUrl() + "/api/tubes", "Bearer t")));
+
+        store.setEnabled(false);
+        assertFalse(store.isEnabled());
+        assertNull(store.intercept(TestUtils.get(statsUrl(), "Bearer t")));
+        assertTrue(server.getDashboardRequests().isEmpty());
+    }
+}
@@ -0,0 +1,257 @@
+package com.deltatx.logitrack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowWebView;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.net.URL;
+
+/**
+ * MainActivity — chargement, page d'erreur, retry et bridge JavaScript
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class MainActivityTest {
+
+    private static final String ERROR_PAGE = "file:///android_asset/error.html";
+
+    private MockLogiTrackServer server;
+    private ActivityController<MainActivity> controller;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockLogiTrackServer().start();
+        Context context = ApplicationProvider.getApplicationContext();
+        context.getSharedPreferences("logitrack_config", Context.MODE_PRIVATE)
+            .edit().putString("server_url", server.getUrl()).commit();
+    }
+
+    @After
+    public void tearDown() {
+        if (controller != null) {
+            controller.pause().stop().destroy();
+        }
+        server.stop();
+    }
+
+    private MainActivity launch() {
+        controller = Robolectric.buildActivity(MainActivity.class).setup();
+        shadowOf(Looper.getMainLooper()).idle();
+        return controller.get();
+    }
+
+    private ShadowWebView webView(MainActivity activity) {
+        return shadowOf((WebView) activity.findViewById(R.id.webview));
+    }
+
+    private Object callBridge(MainActivity activity, String method, String... args) throws Exception {
+        Object bridge = webView(activity).getJavascriptInterface("LogiTrackBridge");
+        assertNotNull("LogiTrackBridge non enregistré", bridge);
+        Class<?>[] types = new Class<?>[args.length];
+        Arrays.fill(types, String.class);
+        Method m = bridge.getClass().getMethod(method, types);
+        m.setAccessible(true);
+        return m.invoke(bridge, (Object[]) args);
+    }
+
+    private String callBridgeForString(MainActivity activity, String method) throws Exception {
+        return (String) callBridge(activity, method);
+    }
+
+    @Test
+    public void withoutServerUrl_opensConfig() {
+        ApplicationProvider.getApplicationContext()
+            .getSharedPreferences("logitrack_config", Context.MODE_PRIVATE)
+            .edit().clear().commit();
+
+        MainActivity activity = launch();
+
+        Intent next = shadowOf(activity).getNextStartedActivity();
+        assertEquals(ConfigActivity.class.getName(), next.getComponent().getClassName());
+    }
+
+    @Test
+    public void withoutWifi_showsErrorPage() {
+        TestUtils.setWifi(ApplicationProvider.getApplicationContext(), false);
+
+        MainActivity activity = launch();
+
+        assertEquals(ERROR_PAGE, webView(activity).getLastLoadedUrl());
+    }
+
+    @Test
+    public void withWifi_pageReadyWithinBudget_andMarksServerReachable() throws Exception {
+        TestUtils.setWifi(ApplicationProvider.getApplicationContext(), true);
+
+        MainActivity activity = launch();
+        assertEquals(server.getUrl(), webView(activity).getLastLoadedUrl());
+
+        // loadUrl émis : la mesure commence ici, la création de l'activité est exclue
+        long start = System.nanoTime();
+        WebView view = activity.findViewById(R.id.webview);
+        WebViewClient client = webView(activity).getWebViewClient();
+        client.onPageStarted(view, server.getUrl(), null);
+        // Document principal : laissé au WebView par les intercepteurs, servi par MockLogiTrackServer
+        assertNull(client.shouldInterceptRequest(view, TestUtils.get(server.getUrl() + "/")));
+        TestUtils.read(new URL(server.getUrl()).openStream());
+        client.onPageFinished(view, server.getUrl());
+        shadowOf(Looper.getMainLooper()).idle();
+        PerfBudget.check("page_ready_ms", PerfBudget.elapsedMs(start));
+
+        assertFalse(new JSONObject(callBridgeForString(activity, "getRecoveryStats")).getBoolean("recovering"));
+    }
+
+    @Test
+    public void bridgeRetry_afterWifiReturns_reloadsWithoutScheduledDelay() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        TestUtils.setWifi(context, false);
+        MainActivity activity = launch();
+        assertEquals(ERROR_PAGE, webView(activity).getLastLoadedUrl());
+
+        // Horloge du Looper en pause : seul un délai programmé par l'app la ferait avancer
+        TestUtils.setWifi(context, true);
+        long uptime = SystemClock.uptimeMillis();
+        long start = System.nanoTime();
+        callBridge(activity, "retry");
+        TestUtils.waitFor("page rechargée après health check",
+            () -> server.getUrl().equals(webView(activity).getLastLoadedUrl()), 2000);
+        PerfBudget.check("retry_to_load_ms", PerfBudget.elapsedMs(start));
+
+        assertEquals("Geste humain : ni gigue ni backoff", 0, SystemClock.uptimeMillis() - uptime);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void bridgeRetry_serverDown_keepsErrorPageWithoutFullReload() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        TestUtils.setWifi(context, false);
+        MainActivity activity = launch();
+        server.setMode(MockLogiTrackServer.Mode.DEGRADED);
+        TestUtils.setWifi(context, true);
+
+        callBridge(activity, "retry");
+        TestUtils.waitFor("health check effectué", () -> server.getRequestCount() == 1, 2000);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(ERROR_PAGE, webView(activity).getLastLoadedUrl());
+        JSONObject stats = new JSONObject(callBridgeForString(activity, "getRecoveryStats"));
+        assertTrue(stats.getBoolean("recovering"));
+        assertEquals(1, stats.getInt("currentRetries"));
+    }
+
+    @Test
+    public void bridgeReconfigure_clearsServerAndOpensConfig() throws Exception {
+        TestUtils.setWifi(ApplicationProvider.getApplicationContext(), true);
+        MainActivity activity = launch();
+
+        callBridge(activity, "reconfigure");
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertNull(activity.getSharedPreferences("logitrack_config", Context.MODE_PRIVATE)
+            .getString("server_url", null));
+        Intent next = shadowOf(activity).getNextStartedActivity();
+        assertEquals(ConfigActivity.class.getName(), next.getComponent().getClassName());
+    }
+
+    @Test
+    public void notificationRoute_opensDeepLink() {
+        TestUtils.setWifi(ApplicationProvider.getApplicationContext(), true);
+        Intent intent = new Intent(ApplicationProvider.getApplicationContext(), MainActivity.class)
+            .putExtra(NotificationService.EXTRA_ROUTE, "/tubes?highlight=7");
+
+        controller = Robolectric.buildActivity(MainActivity.class, intent).setup();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(server.getUrl() + "/tubes?highlight=7", webView(controller.get()).getLastLoadedUrl());
+    }
+
+    @Test
+    public void notificationRoute_toOtherHost_isRefused() {
+        TestUtils.setWifi(ApplicationProvider.getApplicationContext(), true);
+        Intent intent = new Intent(ApplicationProvider.getApplicationContext(), MainActivity.class)
+            .putExtra(NotificationService.EXTRA_ROUTE, "@evil.host/");
+
+        controller = Robolectric.buildActivity(MainActivity.class, intent).setup();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        // Repli sur l'accueil du serveur configuré
+        assertEquals(server.getUrl(), webView(controller.get()).getLastLoadedUrl());
+    }
+
+    @Test
+    public void sessionBridge_onlyAnswersServerPages() throws Exception {
+        TestUtils.setWifi(ApplicationProvider.getApplicationContext(), true);
+        MainActivity activity = launch();
+        WebView view = activity.findViewById(R.id.webview);
+        WebViewClient client = webView(activity).getWebViewClient();
+        long now = System.currentTimeMillis() / 1000;
+        String token = MockLogiTrackServer.jwt(now, now + 24 * 3600);
+
+        client.onPageStarted(view, server.getUrl() + "/", null);
+        callBridge(activity, "saveSession", token, "{\"id\":7}");
+        assertTrue(callBridgeForString(activity, "getSession").contains(token));
+
+        // Page d'un autre hôte : ni lecture ni modification de la session
+        client.onPageStarted(view, "http://evil.host/", null);
+        assertEquals("", callBridgeForString(activity, "getSession"));
+        callBridge(activity, "clearSession");
+        callBridge(activity, "saveSession", "volé", "{}");
+
+        client.onPageStarted(view, server.getUrl() + "/", null);
+        assertTrue(callBridgeForString(activity, "getSession").contains(token));
+    }
+
+    @Test
+    public void linkOutsideServer_opensExternalBrowser() {
+        TestUtils.setWifi(ApplicationProvider.getApplicationContext(), true);
+        MainActivity activity = launch();
+        WebView view = activity.findViewById(R.id.webview);
+        WebViewClient client = webView(activity).getWebViewClient();
+
+        assertFalse(client.shouldOverrideUrlLoading(view, TestUtils.get(server.getUrl() + "/tubes")));
+        assertFalse(client.shouldOverrideUrlLoading(view, TestUtils.get(ERROR_PAGE)));
+        assertNull(shadowOf(activity).getNextStartedActivity());
+
+        assertTrue(client.shouldOverrideUrlLoading(view, TestUtils.get("https://evil.host/page")));
+        Intent external = shadowOf(activity).getNextStartedActivity();
+        assertEquals(Intent.ACTION_VIEW, external.getAction());
+        assertEquals("https://evil.host/page", external.getDataString());
+    }
+
+    @Test
+    public void buildRouteUrl_staysOnConfiguredServer() {
+        String base = "http://192.168.1.10:3002";
+        assertEquals(base + "/tubes?highlight=7", MainActivity.buildRouteUrl(base, "/tubes?highlight=7"));
+        assertEquals(base + "/checklists/cv-pointage", MainActivity.buildRouteUrl(base, "/checklists/cv-pointage"));
+        assertNull(MainActivity.buildRouteUrl(base, "@evil.host/"));
+        assertNull(MainActivity.buildRouteUrl(base, "//evil.host/"));
+        assertNull(MainActivity.buildRouteUrl(base, "/\\evil.host/"));
+        assertNull(MainActivity.buildRouteUrl(base, "https://evil.host/"));
+        assertNull(MainActivity.buildRouteUrl(base, null));
+    }
+}
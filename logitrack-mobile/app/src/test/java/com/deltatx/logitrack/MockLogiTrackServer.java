@@ -0,0 +1,509 @@
+package com.deltatx.logitrack;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * MockLogiTrackServer — Serveur LogiTrack local et déterministe pour les tests JVM
+ * Reproduit /api/health, /api/tubes, /api/bobines, /uploads, /api/langues(/bundle), /api/dashboard,
+ * /api/auth/refresh et le flux d'événements (/api/notifications/stream), avec des modes lent,
+ * instable, dégradé et étranger
+ */
+public class MockLogiTrackServer {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public enum Mode {
+        NORMAL,     // Réponses immédiates
+        SLOW,       // Latence ajoutée à chaque requête
+        FLAKY,      // Une requête sur deux échoue (503)
+        DEGRADED,   // Health 503 (base de données arrêtée)
+        FOREIGN     // Un autre serveur HTTP répond sur le port
+    }
+
+    private final HttpServer server;
+    private volatile Mode mode = Mode.NORMAL;
+    private volatile int latencyMs = 0;
+    private boolean stopped = false;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger streamConnections = new AtomicInteger();
+    private final List<OutputStream> streamClients = new CopyOnWriteArrayList<>();
+    private final List<Long> streamConnectedAt = new CopyOnWriteArrayList<>();
+    private final Map<String, byte[]> uploads = new ConcurrentHashMap<>();
+    private final AtomicInteger uploadRequests = new AtomicInteger();
+    private final Map<String, Map<String, String>> translations = new ConcurrentHashMap<>();
+    private final List<String> bundleRequests = new CopyOnWriteArrayList<>();
+    private volatile String langues = "{\"langues\":[{\"code\":\"fr\",\"direction\":\"ltr\"}]}";
+    private volatile String statsRevision = "boot.0.20260101";
+    private final List<String> dashboardRequests = new CopyOnWriteArrayList<>();
+    private volatile int refreshStatus = 200;
+    private final List<String> refreshAuthorizations = new CopyOnWriteArrayList<>();
+    private final List<String> streamAuthorizations = new CopyOnWriteArrayList<>();
+
+    public MockLogiTrackServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/api/health", this::handleHealth);
+        server.createContext("/api/tubes", exchange -> handleList(exchange, buildTubes(50, 12)));
+        server.createContext("/api/bobines", exchange -> handleList(exchange, buildBobines(30)));
+        server.createContext("/api/notifications/stream", this::handleStream);
+        server.createContext("/uploads/", this::handleUpload);
+        server.createContext("/api/langues", this::handleLangues);
+        server.createContext("/api/langues/bundle/", this::handleBundle);
+        server.createContext("/api/dashboard/", this::handleDashboard);
+        server.createContext("/api/auth/refresh", this::handleRefresh);
+        server.createContext("/", exchange -> respond(exchange, 200, "text/html",
+            "<html><body>LogiTrack</body></html>".getBytes(UTF8)));
+    }
+
+    public MockLogiTrackServer start() {
+        server.start();
+        return this;
+    }
+
+    public synchronized void stop() {
+        if (stopped) return;
+        stopped = true;
+        dropStreamClients();
+        server.stop(0);
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public void setLatency(int latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public int getStreamConnections() {
+        return streamConnections.get();
+    }
+
+    /**
+     * En-têtes Authorization reçus sur /api/notifications/stream
+     */
+    public List<String> getStreamAuthorizations() {
+        return new ArrayList<>(streamAuthorizations);
+    }
+
+    public List<Long> getStreamConnectedAt() {
+        return new ArrayList<>(streamConnectedAt);
+    }
+
+    /**
+     * Publie un fichier sous /uploads (servi seulement avec un token Bearer)
+     */
+    public void putUpload(String path, byte[] data) {
+        uploads.put(path, data);
+    }
+
+    public int getUploadRequests() {
+        return uploadRequests.get();
+    }
+
+    /**
+     * Remplace les traductions d'une langue (la version change avec le contenu)
+     */
+    public void setTranslations(String code, Map<String, String> values) {
+        translations.put(code, new HashMap<>(values));
+    }
+
+    /**
+     * Remplace la liste renvoyée par /api/langues (modification par l'admin)
+     */
+    public void setLangues(String json) {
+        langues = json;
+    }
+
+    /**
+     * Requêtes reçues sur /api/langues/bundle (chemin + query)
+     */
+    public List<String> getBundleRequests() {
+        return new ArrayList<>(bundleRequests);
+    }
+
+    /**
+     * Change la révision des statistiques (équivalent d'une écriture sur l'API)
+     */
+    public void setStatsRevision(String revision) {
+        statsRevision = revision;
+    }
+
+    /**
+     * Requêtes reçues sur /api/dashboard (chemins)
+     */
+    public List<String> getDashboardRequests() {
+        return new ArrayList<>(dashboardRequests);
+    }
+
+    /**
+     * Code renvoyé par /api/auth/refresh (200 : nouveau token valable 24 h)
+     */
+    public void setRefreshStatus(int status) {
+        refreshStatus = status;
+    }
+
+    /**
+     * En-têtes Authorization reçus sur /api/auth/refresh
+     */
+    public List<String> getRefreshAuthorizations() {
+        return new ArrayList<>(refreshAuthorizations);
+    }
+
+    /**
+     * JWT de test (signature factice : seul le payload est lu par l'app)
+     */
+    public static String jwt(long issuedAtSec, long expiresAtSec) {
+        String payload = "{\"operateurId\":1,\"iat\":" + issuedAtSec + ",\"exp\":" + expiresAtSec + "}";
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(UTF8))
+            + "." + encoder.encodeToString(payload.getBytes(UTF8))
+            + ".signature";
+    }
+
+    // ============================================
+    // Événements temps réel (équivalent Socket.IO)
+    // ============================================
+
+    /**
+     * Émet un événement à tous les clients du flux
+     */
+    public void emit(String event, String json) {
+        byte[] frame = ("event: " + event + "\ndata: " + json + "\n\n").getBytes(UTF8);
+        for (OutputStream out : streamClients) {
+            try {
+                out.write(frame);
+                out.flush();
+            } catch (IOException e) {
+                streamClients.remove(out);
+            }
+        }
+    }
+
+    /**
+     * Coupe toutes les connexions de flux (simule un redémarrage du serveur)
+     */
+    public void dropStreamClients() {
+        for (OutputStream out : streamClients) {
+            try {
+                out.close();
+            } catch (IOException ignored) {}
+        }
+        streamClients.clear();
+    }
+
+    // ============================================
+    // Handlers
+    // ============================================
+
+    private boolean beforeRequest(HttpExchange exchange) throws IOException {
+        int n = requestCount.incrementAndGet();
+        if (mode == Mode.SLOW && latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException ignored) {}
+        }
+        if (mode == Mode.FLAKY && n % 2 == 1) {
+            respond(exchange, 503, "application/json", "{\"error\":\"Service indisponible\"}".getBytes(UTF8));
+            return false;
+        }
+        return true;
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        if (!beforeRequest(exchange)) return;
+
+        if (mode == Mode.FOREIGN) {
+            respond(exchange, 200, "application/json", "{\"status\":\"up\",\"name\":\"nginx\"}".getBytes(UTF8));
+        } else if (mode == Mode.DEGRADED) {
+            respond(exchange, 503, "application/json",
+                "{\"status\":\"DEGRADED\",\"message\":\"Logi-Track API is running\",\"database\":\"disconnected\"}".getBytes(UTF8));
+        } else {
+            respond(exchange, 200, "application/json",
+                "{\"status\":\"OK\",\"message\":\"Logi-Track API is running - Certification API 5L\",\"version\":\"2.1.0\",\"database\":\"connected\"}".getBytes(UTF8));
+        }
+    }
+
+    private void handleList(HttpExchange exchange, JSONObject body) throws IOException {
+        if (!beforeRequest(exchange)) return;
+
+        try {
+            boolean columns = "columns".equals(exchange.getRequestHeaders().getFirst("X-LogiTrack-Format"));
+            Object payload = columns ? toColumns(body) : body;
+            byte[] raw = payload.toString().getBytes(UTF8);
+
+            // ETag comme compactResponse : calculé sur le corps non compressé, 304 sans corps si à jour
+            String etag = "W/\"" + Integer.toHexString(payload.toString().hashCode()) + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
+            if (columns) {
+                exchange.getResponseHeaders().set("X-LogiTrack-Format", "columns");
+            }
+            String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (accept != null && accept.contains("gzip")) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+                    gzip.write(raw);
+                }
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.getResponseHeaders().set("X-LogiTrack-Raw-Length", String.valueOf(raw.length));
+                raw = buffer.toByteArray();
+            }
+            respond(exchange, 200, "application/json; charset=utf-8", raw);
+        } catch (JSONException e) {
+            respond(exchange, 500, "application/json", "{\"error\":\"mock\"}".getBytes(UTF8));
+        }
+    }
+
+    private void handleStream(HttpExchange exchange) throws IOException {
+        if (!beforeRequest(exchange)) return;
+
+        streamConnections.incrementAndGet();
+        streamAuthorizations.add(String.valueOf(exchange.getRequestHeaders().getFirst("Authorization")));
+        streamConnectedAt.add(System.nanoTime());
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        out.write("retry: 10000\n\n".getBytes(UTF8));
+        out.flush();
+        // La réponse reste ouverte jusqu'à dropStreamClients()
+        streamClients.add(out);
+    }
+
+    private void handleUpload(HttpExchange exchange) throws IOException {
+        uploadRequests.incrementAndGet();
+        String auth = exchange.getRequestHeaders().getFirst("Authorization");
+        if (auth == null || !auth.startsWith("Bearer ")) {
+            respond(exchange, 401, "application/json", "{\"code\":\"TOKEN_REQUIRED\"}".getBytes(UTF8));
+            return;
+        }
+        byte[] data = uploads.get(exchange.getRequestURI().getPath());
+        if (data == null) {
+            respond(exchange, 404, "application/json", "{\"error\":\"Route non trouvée\"}".getBytes(UTF8));
+            return;
+        }
+        respond(exchange, 200, "image/jpeg", data);
+    }
+
+    private void handleLangues(HttpExchange exchange) throws IOException {
+        if (!"/api/langues".equals(exchange.getRequestURI().getPath())) {
+            respond(exchange, 404, "application/json", "{\"error\":\"Route non trouvée\"}".getBytes(UTF8));
+            return;
+        }
+        if (!beforeRequest(exchange)) return;
+        respond(exchange, 200, "application/json; charset=utf-8", langues.getBytes(UTF8));
+    }
+
+    /**
+     * Version simplifiée de /api/langues/bundle/:code : pas d'historique,
+     * donc réponse vide si la version est à jour, bundle complet sinon
+     */
+    private void handleBundle(HttpExchange exchange) throws IOException {
+        bundleRequests.add(exchange.getRequestURI().toString());
+        String path = exchange.getRequestURI().getPath();
+        String code = path.substring(path.lastIndexOf('/') + 1);
+        String query = exchange.getRequestURI().getQuery();
+        String since = query != null && query.startsWith("since=") ? query.substring(6) : null;
+
+        Map<String, String> values = translations.get(code);
+        if (values == null) values = new HashMap<>();
+        String version = TranslationCache.computeVersion(values);
+        try {
+            JSONObject body = new JSONObject().put("langue", code).put("version", version);
+            if (version.equals(since)) {
+                body.put("full", false).put("changes", new JSONObject()).put("removed", new JSONArray());
+            } else {
+                body.put("full", true).put("traductions", new JSONObject(values));
+            }
+            respond(exchange, 200, "application/json; charset=utf-8", body.toString().getBytes(UTF8));
+        } catch (JSONException e) {
+            respond(exchange, 500, "application/json", "{\"error\":\"mock\"}".getBytes(UTF8));
+        }
+    }
+
+    private void handleDashboard(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        dashboardRequests.add(path);
+        String revision = statsRevision;
+        try {
+            if (path.equals("/api/dashboard/revision")) {
+                respond(exchange, 200, "application/json", new JSONObject().put("revision", revision).toString().getBytes(UTF8));
+            } else if (path.equals("/api/dashboard/stats")) {
+                JSONObject body = new JSONObject()
+                    .put("tubes", new JSONObject().put("en_cours", 12).put("termines", 40).put("rebuts", 1))
+                    .put("revision_calculee", revision);
+                exchange.getResponseHeaders().set("X-LogiTrack-Stats-Revision", revision);
+                respond(exchange, 200, "application/json; charset=utf-8", body.toString().getBytes(UTF8));
+            } else {
+                respond(exchange, 404, "application/json", "{\"error\":\"Route non trouvée\"}".getBytes(UTF8));
+            }
+        } catch (JSONException e) {
+            respond(exchange, 500, "application/json", "{\"error\":\"mock\"}".getBytes(UTF8));
+        }
+    }
+
+    private void handleRefresh(HttpExchange exchange) throws IOException {
+        if (!beforeRequest(exchange)) return;
+
+        String auth = exchange.getRequestHeaders().getFirst("Authorization");
+        refreshAuthorizations.add(auth);
+        int status = refreshStatus;
+        if (auth == null || !auth.startsWith("Bearer ")) {
+            respond(exchange, 401, "application/json", "{\"code\":\"TOKEN_REQUIRED\"}".getBytes(UTF8));
+        } else if (status != 200) {
+            respond(exchange, status, "application/json", "{\"code\":\"ACCOUNT_DISABLED\"}".getBytes(UTF8));
+        } else {
+            long now = System.currentTimeMillis() / 1000;
+            String token = jwt(now, now + 24 * 3600);
+            respond(exchange, 200, "application/json", ("{\"token\":\"" + token + "\"}").getBytes(UTF8));
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String type, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // ============================================
+    // Données de démonstration
+    // ============================================
+
+    static JSONObject buildTubes(int count, int etapesPerTube) {
+        try {
+            JSONArray data = new JSONArray();
+            for (int i = 1; i <= count; i++) {
+                JSONArray etapes = new JSONArray();
+                for (int e = 1; e <= etapesPerTube; e++) {
+                    etapes.put(new JSONObject()
+                        .put("id", i * 100 + e)
+                        .put("tube_id", i)
+                        .put("etape_numero", e)
+                        .put("statut", e < 4 ? "valide" : "en_attente")
+                        .put("commentaire", JSONObject.NULL));
+                }
+                data.put(new JSONObject()
+                    .put("id", i)
+                    .put("numero", "T-" + i)
+                    .put("statut", "en_production")
+                    .put("etape_courante", 4)
+                    .put("coulee_numero", "C-" + (i / 10))
+                    .put("etapes", etapes));
+            }
+            return new JSONObject()
+                .put("data", data)
+                .put("pagination", new JSONObject().put("page", 1).put("limit", 100).put("total", count));
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static JSONObject buildBobines(int count) {
+        try {
+            JSONArray data = new JSONArray();
+            for (int i = 1; i <= count; i++) {
+                data.put(new JSONObject()
+                    .put("id", i)
+                    .put("numero", "B-" + i)
+                    .put("statut", "en_stock")
+                    .put("poids", 18000 + i));
+            }
+            return new JSONObject().put("data", data);
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Même conversion que backend/src/middleware/compactResponse.js (toColumns)
+     */
+    static Object toColumns(Object value) throws JSONException {
+        if (value instanceof JSONArray) {
+            JSONArray arr = (JSONArray) value;
+            boolean objects = arr.length() > 1;
+            for (int i = 0; i < arr.length() && objects; i++) {
+                objects = arr.get(i) instanceof JSONObject;
+            }
+            if (!objects) {
+                JSONArray out = new JSONArray();
+                for (int i = 0; i < arr.length(); i++) out.put(toColumns(arr.get(i)));
+                return out;
+            }
+            JSONArray cols = new JSONArray();
+            List<String> keys = new ArrayList<>();
+            for (int i = 0; i < arr.length(); i++) {
+                Iterator<String> it = arr.getJSONObject(i).keys();
+                while (it.hasNext()) {
+                    String key = it.next();
+                    if (!keys.contains(key)) {
+                        keys.add(key);
+                        cols.put(key);
+                    }
+                }
+            }
+            JSONArray rows = new JSONArray();
+            for (int i = 0; i < arr.length(); i++) {
+                JSONObject item = arr.getJSONObject(i);
+                JSONArray row = new JSONArray();
+                for (String key : keys) {
+                    row.put(item.has(key) ? toColumns(item.get(key)) : JSONObject.NULL);
+                }
+                rows.put(row);
+            }
+            return new JSONObject().put("$cols", cols).put("$rows", rows);
+        }
+        if (value instanceof JSONObject) {
+            JSONObject obj = (JSONObject) value;
+            JSONObject out = new JSONObject();
+            Iterator<String> it = obj.keys();
+            while (it.hasNext()) {
+                String key = it.next();
+                out.put(key, toColumns(obj.get(key)));
+            }
+            return out;
+        }
+        return value;
+    }
+}
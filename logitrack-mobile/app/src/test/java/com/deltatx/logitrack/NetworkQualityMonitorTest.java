@@ -0,0 +1,162 @@
+package com.deltatx.logitrack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * NetworkQualityMonitor — choix du mode full / lite / offline à partir des mesures
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class NetworkQualityMonitorTest {
+
+    private NetworkQualityMonitor monitor;
+
+    @After
+    public void tearDown() {
+        if (monitor != null) monitor.stop();
+    }
+
+    private static NetworkQualityMonitor.Measurements goodLink() {
+        NetworkQualityMonitor.Measurements m = new NetworkQualityMonitor.Measurements();
+        m.connected = true;
+        m.rssi = -55;
+        m.bandwidthKbps = 72000;
+        m.rttMs = 20;
+        m.throughputKbps = 20000;
+        return m;
+    }
+
+    @Test
+    public void goodLink_isFull() {
+        assertEquals(NetworkQualityMonitor.Mode.FULL,
+            NetworkQualityMonitor.classify(goodLink(), NetworkQualityMonitor.Mode.FULL));
+    }
+
+    @Test
+    public void noTransportOrCaptivePortalOrFailures_isOffline() {
+        NetworkQualityMonitor.Measurements m = goodLink();
+        m.connected = false;
+        assertEquals(NetworkQualityMonitor.Mode.OFFLINE, NetworkQualityMonitor.classify(m, NetworkQualityMonitor.Mode.FULL));
+
+        m = goodLink();
+        m.captivePortal = true;
+        assertEquals(NetworkQualityMonitor.Mode.OFFLINE, NetworkQualityMonitor.classify(m, NetworkQualityMonitor.Mode.FULL));
+
+        m = goodLink();
+        m.failures = NetworkQualityMonitor.OFFLINE_FAILURES;
+        assertEquals(NetworkQualityMonitor.Mode.OFFLINE, NetworkQualityMonitor.classify(m, NetworkQualityMonitor.Mode.FULL));
+    }
+
+    @Test
+    public void weakSignalOrSlowRequests_isLite() {
+        NetworkQualityMonitor.Measurements m = goodLink();
+        m.rssi = -80;
+        assertEquals(NetworkQualityMonitor.Mode.LITE, NetworkQualityMonitor.classify(m, NetworkQualityMonitor.Mode.FULL));
+
+        m = goodLink();
+        m.rttMs = 1200;
+        assertEquals(NetworkQualityMonitor.Mode.LITE, NetworkQualityMonitor.classify(m, NetworkQualityMonitor.Mode.FULL));
+
+        m = goodLink();
+        m.throughputKbps = 300;
+        assertEquals(NetworkQualityMonitor.Mode.LITE, NetworkQualityMonitor.classify(m, NetworkQualityMonitor.Mode.FULL));
+    }
+
+    @Test
+    public void unknownMeasurements_doNotDegrade() {
+        NetworkQualityMonitor.Measurements m = new NetworkQualityMonitor.Measurements();
+        m.connected = true;
+        assertNull(NetworkQualityMonitor.weakLinkReason(m, false));
+        assertEquals(NetworkQualityMonitor.Mode.FULL, NetworkQualityMonitor.classify(m, NetworkQualityMonitor.Mode.FULL));
+    }
+
+    @Test
+    public void hysteresis_staysLiteUntilFullThresholdsAreMet() {
+        NetworkQualityMonitor.Measurements m = goodLink();
+        m.rssi = -72;   // entre les deux seuils
+
+        assertEquals(NetworkQualityMonitor.Mode.FULL, NetworkQualityMonitor.classify(m, NetworkQualityMonitor.Mode.FULL));
+        assertEquals(NetworkQualityMonitor.Mode.LITE, NetworkQualityMonitor.classify(m, NetworkQualityMonitor.Mode.LITE));
+
+        m.rssi = -65;
+        assertEquals(NetworkQualityMonitor.Mode.FULL, NetworkQualityMonitor.classify(m, NetworkQualityMonitor.Mode.LITE));
+    }
+
+    @Test
+    public void failuresThenSuccess_switchesOfflineAndBack_andLogsSwitches() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        TestUtils.setWifi(context, true);
+        List<NetworkQualityMonitor.Mode> changes = new ArrayList<>();
+        monitor = new NetworkQualityMonitor(context, (mode, reason) -> changes.add(mode));
+        monitor.start();
+        assertEquals(NetworkQualityMonitor.Mode.FULL, monitor.getMode());
+
+        for (int i = 0; i < NetworkQualityMonitor.OFFLINE_FAILURES; i++) {
+            monitor.recordFailure();
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(NetworkQualityMonitor.Mode.OFFLINE, monitor.getMode());
+
+        monitor.recordSample(15, 64 * 1024, 20);
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(NetworkQualityMonitor.Mode.FULL, monitor.getMode());
+
+        JSONObject status = new JSONObject(monitor.getStatusJson());
+        assertEquals("full", status.getString("mode"));
+        assertEquals(15, status.getLong("rttMs"));
+        assertEquals(2, status.getInt("switches"));
+        assertEquals(2, changes.size());
+        assertTrue(context.getSharedPreferences("logitrack_stats", Context.MODE_PRIVATE)
+            .getString("network_mode_last_switch", "").startsWith("offline → full"));
+    }
+
+    @Test
+    public void failuresWithoutNewTraffic_ageOutOfOffline() {
+        TestUtils.setWifi(ApplicationProvider.getApplicationContext(), true);
+        monitor = new NetworkQualityMonitor(ApplicationProvider.getApplicationContext(), null);
+        monitor.start();
+        for (int i = 0; i < NetworkQualityMonitor.OFFLINE_FAILURES; i++) {
+            monitor.recordFailure();
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(NetworkQualityMonitor.Mode.OFFLINE, monitor.getMode());
+
+        // Aucune requête n'aboutit ni n'échoue en offline : l'évaluation périodique doit en sortir seule
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(NetworkQualityMonitor.FAILURE_MAX_AGE + 15000));
+        assertEquals(NetworkQualityMonitor.Mode.FULL, monitor.getMode());
+
+        // Un échec isolé après la fenêtre ne suffit pas à repasser offline
+        monitor.recordFailure();
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(NetworkQualityMonitor.Mode.FULL, monitor.getMode());
+    }
+
+    @Test
+    public void withoutWifi_startsOffline() {
+        Context context = ApplicationProvider.getApplicationContext();
+        TestUtils.setWifi(context, false);
+        monitor = new NetworkQualityMonitor(context, null);
+        monitor.start();
+
+        assertEquals(NetworkQualityMonitor.Mode.OFFLINE, monitor.getMode());
+    }
+}
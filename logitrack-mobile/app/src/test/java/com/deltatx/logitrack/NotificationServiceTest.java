@@ -0,0 +1,191 @@
+package com.deltatx.logitrack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Application;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+
+/**
+ * NotificationService — flux d'événements, regroupement et reconnexion
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class NotificationServiceTest {
+
+    private MockLogiTrackServer server;
+    private ServiceController<NotificationService> controller;
+
+    // Backoff injecté : la reconnexion attend que le test ouvre la barrière, sans sommeil réel
+    private final List<Long> backoffs = new CopyOnWriteArrayList<>();
+    private final Semaphore backoffGate = new Semaphore(0);
+
+    @Before
+    public void setUp() throws Exception {
+        NotificationService.backoffSleeper = delayMs -> {
+            backoffs.add(delayMs);
+            backoffGate.acquire();
+        };
+        server = new MockLogiTrackServer().start();
+        Context context = ApplicationProvider.getApplicationContext();
+        Intent intent = new Intent(context, NotificationService.class)
+            .putExtra(NotificationService.EXTRA_SERVER_URL, server.getUrl())
+            .putExtra(NotificationService.EXTRA_TOKEN, "token-test");
+        controller = Robolectric.buildService(NotificationService.class, intent).create().startCommand(0, 1);
+        TestUtils.waitFor("flux connecté", () -> server.getStreamConnections() == 1, 3000);
+    }
+
+    @After
+    public void tearDown() {
+        if (controller != null) controller.destroy();
+        server.stop();
+        NotificationService.backoffSleeper = Thread::sleep;
+    }
+
+    private List<Notification> alerts() {
+        NotificationManager nm = (NotificationManager) ApplicationProvider.getApplicationContext()
+            .getSystemService(Context.NOTIFICATION_SERVICE);
+        return shadowOf(nm).getAllNotifications();
+    }
+
+    @Test
+    public void burstOfAlerts_isCoalescedIntoOneGroup() throws Exception {
+        server.emit("new_alert", "{\"message\":\"Arrêt ligne 1\"}");
+        server.emit("new_alert", "{\"message\":\"Arrêt ligne 2\"}");
+        server.emit("notification", "{\"titre\":\"Décision Finale — Tube N°7\",\"message\":\"API 5L\",\"tube_id\":7}");
+
+        // Les événements arrivent sur le thread réseau puis sont postés sur le Looper principal
+        Thread.sleep(300);
+        shadowOf(Looper.getMainLooper()).idle();
+        int before = alerts().size();
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(3));
+
+        int summaries = 0;
+        int posted = 0;
+        for (Notification n : alerts()) {
+            if ((n.flags & Notification.FLAG_GROUP_SUMMARY) != 0) summaries++;
+            else if ("com.deltatx.logitrack.ALERTES".equals(n.getGroup())) posted++;
+        }
+        assertEquals(3, posted);
+        assertEquals(1, summaries);
+        assertTrue("Aucune notification avant la fenêtre de regroupement", before <= 1);
+    }
+
+    private int checklistReminders() {
+        int count = 0;
+        for (Notification n : alerts()) {
+            if ("⏰ Checklist à renouveler".equals(n.extras.getString(Notification.EXTRA_TITLE))) count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void expiredChecklist_notifiedOnceAcrossServiceRestarts() throws Exception {
+        String echeances = "[{\"code\":\"CV_POINTAGE\",\"nom\":\"CV Pointage\",\"date_expiration\":\"2026-01-01T06:00:00.000Z\"},"
+            + "{\"code\":\"HYDROTEST\",\"nom\":\"Hydrotest\",\"date_expiration\":null}]";
+        server.emit("checklist_echeances", echeances);
+        Thread.sleep(300);
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(4));
+        assertEquals(1, checklistReminders());
+
+        // L'opérateur revient dans l'app puis la quitte : nouveau service, même liste d'échéances
+        controller.destroy();
+        Intent intent = new Intent(ApplicationProvider.getApplicationContext(), NotificationService.class)
+            .putExtra(NotificationService.EXTRA_SERVER_URL, server.getUrl())
+            .putExtra(NotificationService.EXTRA_TOKEN, "token-test");
+        controller = Robolectric.buildService(NotificationService.class, intent).create().startCommand(0, 1);
+        TestUtils.waitFor("flux reconnecté", () -> server.getStreamConnections() == 2, 3000);
+
+        server.emit("checklist_echeances", echeances);
+        Thread.sleep(300);
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(4));
+        assertEquals(1, checklistReminders());
+    }
+
+    @Test
+    public void checklistAlarmAfterProcessDeath_stopsService() {
+        Intent reminder = new Intent(ApplicationProvider.getApplicationContext(), NotificationService.class)
+            .setAction("com.deltatx.logitrack.CHECKLIST_REMINDER");
+        ServiceController<NotificationService> orphan =
+            Robolectric.buildService(NotificationService.class, reminder).create().startCommand(0, 1);
+
+        assertTrue(shadowOf(orphan.get()).isStoppedBySelf());
+        orphan.destroy();
+    }
+
+    @Test
+    public void rotatedToken_usedOnNextReconnect() throws Exception {
+        Application app = ApplicationProvider.getApplicationContext();
+        NotificationService.updateToken(app, "token-renouvele");
+        controller.withIntent(shadowOf(app).getNextStartedService()).startCommand(0, 2);
+
+        server.dropStreamClients();
+        TestUtils.waitFor("backoff programmé", () -> backoffs.size() == 1, 3000);
+        backoffGate.release();
+        TestUtils.waitFor("reconnexion du flux", () -> server.getStreamConnections() == 2, 3000);
+        assertEquals("Bearer token-renouvele", server.getStreamAuthorizations().get(1));
+    }
+
+    @Test
+    public void rotatedToken_neverStartsStoppedService() {
+        Application app = ApplicationProvider.getApplicationContext();
+        controller.destroy();
+        controller = null;
+
+        // Démarrage au premier plan interdit depuis l'arrière-plan (Android 12+) : rien n'est lancé
+        assertFalse(NotificationService.isCreated());
+        NotificationService.updateToken(app, "token-renouvele");
+        assertNull(shadowOf(app).getNextStartedService());
+    }
+
+    @Test
+    public void serverRestart_reconnectsOnceAfterBackoff_withinBudget() throws Exception {
+        long dropped = System.nanoTime();
+        server.dropStreamClients();
+
+        // Backoff de 2 s minimum + gigue : aucune reconnexion tant qu'il n'est pas écoulé
+        TestUtils.waitFor("backoff programmé", () -> backoffs.size() == 1, 3000);
+        long backoffStarted = System.nanoTime();
+        long delay = backoffs.get(0);
+        assertTrue("Backoff " + delay + " ms", delay >= 2000 && delay < 4000);
+        assertEquals(1, server.getStreamConnections());
+
+        long released = System.nanoTime();
+        backoffGate.release();
+        TestUtils.waitFor("reconnexion du flux", () -> server.getStreamConnections() == 2, 3000);
+        long reconnectedAt = server.getStreamConnectedAt().get(1);
+        PerfBudget.check("sse_reconnect_ms", ((backoffStarted - dropped) + (reconnectedAt - released)) / 1_000_000);
+
+        // Le flux rétabli délivre de nouveau les événements, sans seconde reconnexion
+        server.emit("new_alert", "{\"message\":\"Après redémarrage\"}");
+        TestUtils.waitFor("alerte reçue après reconnexion", () -> {
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(3));
+            return !alerts().isEmpty();
+        }, 3000);
+        assertEquals("Une seule reconnexion par coupure", 2, server.getStreamConnections());
+        assertEquals(1, backoffs.size());
+    }
+}
@@ -0,0 +1,72 @@
+package com.deltatx.logitrack;
+
+import static org.junit.Assert.assertTrue;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * PerfBudget — Compare une mesure à son budget (perf-budgets.properties)
+ * et enregistre la valeur comme ligne de base dans build/reports/perf
+ * (journal via Log, visible avec ShadowLog.stream)
+ */
+final class PerfBudget {
+
+    private static final String TAG = "PerfBudget";
+
+    private static final File BASELINES = new File("build/reports/perf/baselines.properties");
+    private static Properties budgets;
+
+    private PerfBudget() {}
+
+    static synchronized void check(String name, long measuredMs) {
+        long budget = Long.parseLong(loadBudgets().getProperty(name, "-1"));
+        assertTrue("Budget inconnu: " + name, budget > 0);
+
+        record(name, measuredMs);
+        Log.i(TAG, name + " = " + measuredMs + " ms (budget " + budget + " ms)");
+        assertTrue("Régression de latence " + name + " : " + measuredMs + " ms > " + budget + " ms",
+            measuredMs <= budget);
+    }
+
+    static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static Properties loadBudgets() {
+        if (budgets == null) {
+            budgets = new Properties();
+            try (InputStream in = PerfBudget.class.getClassLoader().getResourceAsStream("perf-budgets.properties")) {
+                if (in != null) budgets.load(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("perf-budgets.properties illisible", e);
+            }
+        }
+        return budgets;
+    }
+
+    private static void record(String name, long measuredMs) {
+        Properties baselines = new Properties();
+        try {
+            BASELINES.getParentFile().mkdirs();
+            if (BASELINES.exists()) {
+                try (InputStream in = new FileInputStream(BASELINES)) {
+                    baselines.load(in);
+                }
+            }
+            baselines.setProperty(name, String.valueOf(measuredMs));
+            try (OutputStream out = new FileOutputStream(BASELINES)) {
+                baselines.store(out, "Lignes de base LogiTrack (ms)");
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Impossible d'enregistrer " + name + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.deltatx.logitrack;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.media.ExifInterface;
+import android.os.Looper;
+import android.webkit.WebResourceResponse;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * PhotoCache — téléchargement unique des /uploads, choix de la taille servie et miniatures redressées
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class PhotoCacheTest {
+
+    private static final String PHOTO = "/uploads/bobines/bobine-1-abc.jpg";
+    private static final String ROTATED = "/uploads/tubes/tube-7-cnd.jpg";
+
+    private MockLogiTrackServer server;
+    private Context context;
+    private PhotoCache cache;
+    private SessionStore session;
+    private final byte[] photoBytes = "photo-jpeg-simulée".getBytes();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockLogiTrackServer().start();
+        server.putUpload(PHOTO, photoBytes);
+        context = ApplicationProvider.getApplicationContext();
+        cache = new PhotoCache(context, server.getUrl());
+        session = TestUtils.activeSession(context, server.getUrl());
+        cache.setSessionStore(session);
+    }
+
+    @After
+    public void tearDown() {
+        session.stop();
+        server.stop();
+    }
+
+    @Test
+    public void original_isDownloadedOnceThenServedFromDisk() throws Exception {
+        String url = server.getUrl() + PHOTO + "?token=abc";
+
+        WebResourceResponse first = cache.intercept(TestUtils.get(url));
+        WebResourceResponse second = cache.intercept(TestUtils.get(url));
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertArrayEquals(photoBytes, TestUtils.read(first.getData()));
+        assertArrayEquals(photoBytes, TestUtils.read(second.getData()));
+        assertEquals("image/jpeg", second.getMimeType());
+        assertEquals(1, server.getUploadRequests());
+    }
+
+    @Test
+    public void cachedOriginal_withoutValidSession_isLeftToWebView() throws Exception {
+        String url = server.getUrl() + PHOTO + "?token=abc";
+        TestUtils.read(cache.intercept(TestUtils.get(url)).getData());
+
+        // Déconnexion : le ?token= de la page n'est pas vérifié localement, le serveur doit répondre
+        session.clear();
+        assertNull(cache.intercept(TestUtils.get(url)));
+        assertNull(cache.intercept(TestUtils.get(url + "&w=160")));
+        assertEquals(1, server.getUploadRequests());
+    }
+
+    @Test
+    public void missingTokenOrPhoto_isLeftToWebView() {
+        session.clear();
+        assertNull(cache.intercept(TestUtils.get(server.getUrl() + PHOTO)));
+        assertNull(cache.intercept(TestUtils.get(server.getUrl() + "/uploads/inconnue.jpg?token=abc")));
+        assertNull(cache.intercept(TestUtils.get(server.getUrl() + "/api/tubes?token=abc")));
+    }
+
+    /**
+     * JPEG paysage 800×400 (moitié gauche rouge, droite bleue) marqué « rotation 90° » en EXIF,
+     * comme une photo prise tablette tournée
+     */
+    private byte[] rotatedJpeg() throws Exception {
+        Bitmap photo = Bitmap.createBitmap(800, 400, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(photo);
+        Paint paint = new Paint();
+        paint.setColor(Color.RED);
+        canvas.drawRect(0, 0, 400, 400, paint);
+        paint.setColor(Color.BLUE);
+        canvas.drawRect(400, 0, 800, 400, paint);
+
+        File jpeg = new File(context.getCacheDir(), "exif-test.jpg");
+        try (OutputStream out = new FileOutputStream(jpeg)) {
+            photo.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        }
+        ExifInterface exif = new ExifInterface(jpeg.getPath());
+        exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(ExifInterface.ORIENTATION_ROTATE_90));
+        exif.saveAttributes();
+        return Files.readAllBytes(jpeg.toPath());
+    }
+
+    @Test
+    @GraphicsMode(GraphicsMode.Mode.NATIVE)
+    public void exifRotatedPhoto_thumbnailIsUprightAtBucketWidth() throws Exception {
+        server.putUpload(ROTATED, rotatedJpeg());
+
+        WebResourceResponse response = cache.intercept(TestUtils.get(server.getUrl() + ROTATED + "?token=abc&w=160"));
+
+        assertNotNull(response);
+        assertEquals("image/jpeg", response.getMimeType());
+        byte[] data = TestUtils.read(response.getData());
+        Bitmap thumb = BitmapFactory.decodeByteArray(data, 0, data.length);
+        // Portrait une fois redressée ; sous-échantillonnage ×2 calculé sur la largeur affichée (400)
+        assertEquals(200, thumb.getWidth());
+        assertEquals(400, thumb.getHeight());
+        // Rotation horaire de 90° : la moitié gauche (rouge) passe en haut
+        int top = thumb.getPixel(100, 50);
+        int bottom = thumb.getPixel(100, 350);
+        assertTrue(Color.red(top) > 200 && Color.blue(top) < 80);
+        assertTrue(Color.blue(bottom) > 200 && Color.red(bottom) < 80);
+    }
+
+    @Test
+    public void liteMode_photoNotYetCached_servesPlaceholder() throws Exception {
+        TestUtils.setWifi(context, true);
+        NetworkQualityMonitor monitor = new NetworkQualityMonitor(context, null);
+        monitor.start();
+        monitor.recordSample(NetworkQualityMonitor.LITE_RTT_MS * 2, 1024, 10);
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(NetworkQualityMonitor.Mode.LITE, monitor.getMode());
+        cache.setQualityMonitor(monitor);
+
+        WebResourceResponse response = cache.intercept(TestUtils.get(server.getUrl() + PHOTO + "?token=abc"));
+        monitor.stop();
+
+        assertNotNull(response);
+        assertEquals("image/svg+xml", response.getMimeType());
+        assertEquals("no-store", response.getResponseHeaders().get("Cache-Control"));
+        assertTrue(new String(TestUtils.read(response.getData()), "UTF-8").startsWith("<svg"));
+        assertEquals(0, server.getUploadRequests());
+    }
+
+    @Test
+    public void widthHint_isRoundedUpToThumbnailBucket() {
+        assertEquals(0, PhotoCache.thumbWidth(null));
+        assertEquals(0, PhotoCache.thumbWidth("abc"));
+        assertEquals(160, PhotoCache.thumbWidth("96"));
+        assertEquals(320, PhotoCache.thumbWidth("200"));
+        assertEquals(640, PhotoCache.thumbWidth("640"));
+        assertEquals(0, PhotoCache.thumbWidth("2000"));
+    }
+
+    @Test
+    public void inSampleSize_keepsAtLeastTargetWidth() {
+        assertEquals(1, PhotoCache.computeInSampleSize(300, 160));
+        assertEquals(2, PhotoCache.computeInSampleSize(640, 320));
+        assertEquals(8, PhotoCache.computeInSampleSize(4000, 320));
+        assertEquals(16, PhotoCache.computeInSampleSize(4000, 160));
+    }
+}
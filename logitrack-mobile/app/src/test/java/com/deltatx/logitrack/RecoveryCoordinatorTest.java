@@ -0,0 +1,127 @@
+package com.deltatx.logitrack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * RecoveryCoordinator — étalement des tentatives et health check avant rechargement
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class RecoveryCoordinatorTest {
+
+    private MockLogiTrackServer server;
+    private RecoveryCoordinator recovery;
+    private int healthyCalls = 0;
+    private long lastDelay = 0;
+    private int scheduledCount = 0;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockLogiTrackServer().start();
+        Context context = ApplicationProvider.getApplicationContext();
+        context.getSharedPreferences("logitrack_stats", Context.MODE_PRIVATE).edit().clear().commit();
+        recovery = new RecoveryCoordinator(context, server.getUrl(), new RecoveryCoordinator.Listener() {
+            @Override
+            public void onServerHealthy() {
+                healthyCalls++;
+            }
+
+            @Override
+            public void onRetryScheduled(long delayMs, int attempt) {
+                lastDelay = delayMs;
+                scheduledCount++;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        recovery.stop();
+        server.stop();
+    }
+
+    @Test
+    public void delays_growThenCap_andStayWithinDeviceWindow() {
+        Random random = new Random(42);
+        for (int attempt = 0; attempt < 10; attempt++) {
+            long backoff = Math.min(RecoveryCoordinator.MAX_DELAY, RecoveryCoordinator.BASE_DELAY << Math.min(attempt, 4));
+            long delay = RecoveryCoordinator.computeDelay(attempt, 1234, random);
+            assertTrue(delay >= backoff / 2 + 1234);
+            assertTrue(delay <= backoff + 1234);
+        }
+    }
+
+    @Test
+    public void devicesRestartingTogether_areSpreadOut() {
+        Set<Long> firstRetrySeconds = new HashSet<>();
+        for (int device = 0; device < 50; device++) {
+            long offset = RecoveryCoordinator.computeDeviceOffset("tablette-" + device);
+            assertTrue(offset >= 0 && offset < RecoveryCoordinator.DEVICE_SPREAD);
+            firstRetrySeconds.add(RecoveryCoordinator.computeDelay(0, offset, new Random(device)) / 1000);
+        }
+        // 50 tablettes ne doivent pas toutes relancer dans la même seconde
+        assertTrue("Tentatives trop groupées: " + firstRetrySeconds, firstRetrySeconds.size() >= 5);
+    }
+
+    @Test
+    public void linkRestored_checksAfterDeviceOffsetOnly() throws Exception {
+        server.setMode(MockLogiTrackServer.Mode.DEGRADED);
+        recovery.onFailure();
+        long offset = new JSONObject(recovery.getStatsJson()).getLong("deviceOffsetMs");
+
+        server.setMode(MockLogiTrackServer.Mode.NORMAL);
+        recovery.onLinkRestored();
+        assertEquals(2, scheduledCount);
+        assertTrue(lastDelay >= offset && lastDelay < offset + 1000);
+
+        // Aucune vérification immédiate : toutes les tablettes voient le lien revenir en même temps
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(0, server.getRequestCount());
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(lastDelay));
+        TestUtils.waitFor("serveur de nouveau sain", () -> healthyCalls == 1, 2000);
+    }
+
+    @Test
+    public void serverDown_schedulesRetryWithoutReload_thenRecoversAndRecordsStats() throws Exception {
+        server.setMode(MockLogiTrackServer.Mode.DEGRADED);
+        recovery.onFailure();
+        assertTrue(lastDelay >= RecoveryCoordinator.BASE_DELAY / 2);
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(lastDelay));
+        TestUtils.waitFor("premier échec reprogrammé", () -> scheduledCount == 2, 2000);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, healthyCalls);
+
+        server.setMode(MockLogiTrackServer.Mode.NORMAL);
+        recovery.onServerAnnounced();
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(lastDelay));
+        TestUtils.waitFor("serveur de nouveau sain", () -> healthyCalls == 1, 2000);
+
+        recovery.onRecovered();
+        JSONObject stats = new JSONObject(recovery.getStatsJson());
+        assertEquals(1, stats.getInt("recoveryCount"));
+        assertEquals(2, stats.getInt("lastRecoveryRetries"));
+        assertTrue(stats.getLong("lastRecoveryMs") >= lastDelay);
+    }
+}
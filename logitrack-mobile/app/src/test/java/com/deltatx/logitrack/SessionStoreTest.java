@@ -0,0 +1,210 @@
+package com.deltatx.logitrack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SessionStore — session chiffrée, restaurée au redémarrage et renouvelée avant expiration
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class SessionStoreTest {
+
+    private static final long HOUR = 3600;
+
+    /**
+     * Chiffrement de test (l'Android Keystore n'existe pas sous Robolectric)
+     */
+    private static final SessionStore.Crypto XOR = new SessionStore.Crypto() {
+        @Override
+        public byte[] encrypt(byte[] plain) {
+            byte[] out = plain.clone();
+            for (int i = 0; i < out.length; i++) out[i] ^= 0x5A;
+            return out;
+        }
+
+        @Override
+        public byte[] decrypt(byte[] data) {
+            return encrypt(data);
+        }
+    };
+
+    private static final SessionStore.Crypto UNAVAILABLE = new SessionStore.Crypto() {
+        @Override
+        public byte[] encrypt(byte[] plain) throws GeneralSecurityException {
+            throw new GeneralSecurityException("Keystore indisponible");
+        }
+
+        @Override
+        public byte[] decrypt(byte[] data) throws GeneralSecurityException {
+            throw new GeneralSecurityException("Keystore indisponible");
+        }
+    };
+
+    private MockLogiTrackServer server;
+    private Context context;
+    private final List<SessionStore> stores = new ArrayList<>();
+    private final List<String> changes = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockLogiTrackServer().start();
+        context = ApplicationProvider.getApplicationContext();
+        context.getSharedPreferences("logitrack_session", Context.MODE_PRIVATE).edit().clear().commit();
+        context.getSharedPreferences("logitrack_stats", Context.MODE_PRIVATE).edit().clear().commit();
+    }
+
+    @After
+    public void tearDown() {
+        for (SessionStore store : stores) store.stop();
+        server.stop();
+    }
+
+    private SessionStore open(SessionStore.Crypto crypto) {
+        SessionStore store = new SessionStore(context, server.getUrl(), crypto);
+        store.setListener(changes::add);
+        stores.add(store);
+        return store;
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private String savedData() {
+        return context.getSharedPreferences("logitrack_session", Context.MODE_PRIVATE).getString("data", null);
+    }
+
+    @Test
+    public void savedSession_restoredAfterRestart_neverStoredInClear() throws Exception {
+        String token = MockLogiTrackServer.jwt(now(), now() + 24 * HOUR);
+        assertTrue(open(XOR).save(token, "{\"id\":7,\"nom\":\"Benali\",\"role\":\"operateur\"}"));
+
+        assertNotNull(savedData());
+        assertFalse(savedData().contains(token.substring(0, 20)));
+        assertTrue(SessionStore.hasSavedSession(context));
+
+        // Nouveau processus : session et profil relus sans passer par /api/auth
+        SessionStore restarted = open(XOR);
+        assertEquals(token, restarted.getToken());
+        JSONObject session = new JSONObject(restarted.getSessionJson());
+        assertEquals("Benali", session.getJSONObject("user").getString("nom"));
+        assertTrue(new JSONObject(restarted.getStatusJson()).getBoolean("restored"));
+    }
+
+    @Test
+    public void expiredOrOtherServerSession_dropped() {
+        open(XOR).save(MockLogiTrackServer.jwt(now(), now() + 2), "{}");
+        SessionStore other = new SessionStore(context, "http://10.0.0.99:3002", XOR);
+        stores.add(other);
+        assertNull(other.getToken());
+        assertFalse(SessionStore.hasSavedSession(context));
+
+        assertFalse(open(XOR).save(MockLogiTrackServer.jwt(now() - 2 * HOUR, now() - HOUR), "{}"));
+        assertFalse(open(XOR).save("pas-un-jwt", "{}"));
+        assertEquals("", open(XOR).getSessionJson());
+    }
+
+    @Test
+    public void keystoreUnavailable_sessionKeptInMemoryOnly() {
+        SessionStore store = open(UNAVAILABLE);
+        String token = MockLogiTrackServer.jwt(now(), now() + 24 * HOUR);
+        store.save(token, "{}");
+
+        assertEquals(token, store.getToken());
+        assertNull(savedData());
+    }
+
+    @Test
+    public void refreshAt_threeQuartersOfLifetime() {
+        assertEquals(18 * HOUR * 1000, SessionStore.refreshAt(0, 24 * HOUR * 1000));
+        long[] claims = SessionStore.parseClaims(MockLogiTrackServer.jwt(1000, 1000 + 24 * HOUR));
+        assertEquals(1000 * 1000L, claims[0]);
+        assertEquals((1000 + 24 * HOUR) * 1000, claims[1]);
+    }
+
+    @Test
+    public void tokenNearExpiry_rotatedInBackground() throws Exception {
+        String old = MockLogiTrackServer.jwt(now() - 20 * HOUR, now() + 4 * HOUR);
+        SessionStore store = open(XOR);
+        store.save(old, "{\"id\":7}");
+        store.start();
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(2));
+        TestUtils.waitFor("token renouvelé", () -> changes.size() == 1, 3000);
+
+        String rotated = changes.get(0);
+        assertNotEquals(old, rotated);
+        assertEquals(rotated, store.getToken());
+        assertEquals("Bearer " + old, server.getRefreshAuthorizations().get(0));
+        // Le profil est conservé et la nouvelle session est relue au prochain lancement
+        assertEquals(rotated, open(XOR).getToken());
+        assertEquals(7, new JSONObject(store.getSessionJson()).getJSONObject("user").getInt("id"));
+    }
+
+    @Test
+    public void refusedByServer_sessionEnded() throws Exception {
+        server.setRefreshStatus(401);
+        SessionStore store = open(XOR);
+        store.save(MockLogiTrackServer.jwt(now() - 20 * HOUR, now() + 4 * HOUR), "{}");
+
+        store.refresh();
+        TestUtils.waitFor("session terminée", () -> changes.size() == 1, 3000);
+
+        assertNull(changes.get(0));
+        assertNull(store.getToken());
+        assertFalse(SessionStore.hasSavedSession(context));
+    }
+
+    @Test
+    public void newLoginDuringRefresh_keepsNewSession() throws Exception {
+        server.setMode(MockLogiTrackServer.Mode.SLOW);
+        server.setLatency(300);
+        SessionStore store = open(XOR);
+        store.save(MockLogiTrackServer.jwt(now() - 20 * HOUR, now() + 4 * HOUR), "{}");
+
+        store.refresh();
+        String other = MockLogiTrackServer.jwt(now(), now() + 24 * HOUR);
+        store.save(other, "{\"id\":9}");
+        TestUtils.waitFor("réponse du renouvellement", () -> server.getRefreshAuthorizations().size() == 1, 3000);
+        Thread.sleep(500);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(other, store.getToken());
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void launchTime_recordedSeparatelyForRestoredSessions() throws Exception {
+        open(XOR).save(MockLogiTrackServer.jwt(now(), now() + 24 * HOUR), "{}");
+        open(XOR).recordLaunch(420);
+        open(UNAVAILABLE).recordLaunch(2600);
+
+        JSONObject status = new JSONObject(open(XOR).getStatusJson());
+        assertEquals(420, status.getLong("avgRestoredLaunchMs"));
+        assertEquals(2600, status.getLong("avgLoginLaunchMs"));
+    }
+}
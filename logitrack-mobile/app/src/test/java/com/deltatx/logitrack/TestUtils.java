@@ -0,0 +1,132 @@
+package com.deltatx.logitrack;
+
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
+import android.net.Uri;
+import android.os.Looper;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONObject;
+import org.robolectric.shadows.ShadowNetworkCapabilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * TestUtils — Attente active sur le thread principal, réseau, session et requêtes WebView simulés
+ */
+final class TestUtils {
+
+    /**
+     * Chiffrement neutre pour SessionStore (l'Android Keystore n'existe pas sous Robolectric)
+     */
+    static final SessionStore.Crypto CLEAR_CRYPTO = new SessionStore.Crypto() {
+        @Override
+        public byte[] encrypt(byte[] plain) {
+            return plain.clone();
+        }
+
+        @Override
+        public byte[] decrypt(byte[] data) {
+            return data.clone();
+        }
+    };
+
+    private TestUtils() {}
+
+    /**
+     * Exécute les tâches du Looper principal jusqu'à ce que la condition soit vraie
+     * (les threads réseau réels postent leurs résultats via runOnUiThread / Handler)
+     */
+    static void waitFor(String what, Callable<Boolean> condition, long timeoutMs) throws Exception {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            if (condition.call()) return;
+            Thread.sleep(5);
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+        assertTrue("Délai dépassé (" + timeoutMs + " ms) : " + what, condition.call());
+    }
+
+    /**
+     * Simule le réseau actif : WiFi usine ou autre transport (ex. cellulaire)
+     */
+    static void setActiveTransport(Context context, int transport) {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkCapabilities caps = ShadowNetworkCapabilities.newInstance();
+        shadowOf(caps).addTransportType(transport);
+        shadowOf(cm).setNetworkCapabilities(cm.getActiveNetwork(), caps);
+    }
+
+    static void setWifi(Context context, boolean wifi) {
+        setActiveTransport(context, wifi
+            ? NetworkCapabilities.TRANSPORT_WIFI
+            : NetworkCapabilities.TRANSPORT_CELLULAR);
+    }
+
+    /**
+     * Session native valide 24 h sur le serveur (à arrêter avec stop() en fin de test)
+     */
+    static SessionStore activeSession(Context context, String serverUrl) {
+        SessionStore session = new SessionStore(context, serverUrl, CLEAR_CRYPTO);
+        long now = System.currentTimeMillis() / 1000;
+        session.save(MockLogiTrackServer.jwt(now, now + 24 * 3600), "{}");
+        return session;
+    }
+
+    /**
+     * Requête telle que la passe WebViewClient.shouldInterceptRequest (en-têtes modifiables)
+     */
+    static WebResourceRequest request(String method, String url, String authorization) {
+        Map<String, String> headers = new HashMap<>();
+        if (authorization != null) headers.put("Authorization", authorization);
+        return new WebResourceRequest() {
+            @Override public Uri getUrl() { return Uri.parse(url); }
+            @Override public boolean isForMainFrame() { return false; }
+            @Override public boolean isRedirect() { return false; }
+            @Override public boolean hasGesture() { return false; }
+            @Override public String getMethod() { return method; }
+            @Override public Map<String, String> getRequestHeaders() { return headers; }
+        };
+    }
+
+    static WebResourceRequest get(String url, String authorization) {
+        return request("GET", url, authorization);
+    }
+
+    static WebResourceRequest get(String url) {
+        return request("GET", url, null);
+    }
+
+    /**
+     * Corps complet d'une réponse interceptée (le flux est fermé)
+     */
+    static byte[] read(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        try {
+            while ((n = in.read(buffer)) != -1) out.write(buffer, 0, n);
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    static String readString(InputStream in) throws Exception {
+        return new String(read(in), "UTF-8");
+    }
+
+    static JSONObject readJson(WebResourceResponse response) throws Exception {
+        return new JSONObject(readString(response.getData()));
+    }
+}
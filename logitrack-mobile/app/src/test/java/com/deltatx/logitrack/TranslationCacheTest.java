@@ -0,0 +1,131 @@
+package com.deltatx.logitrack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TranslationCache — bundles servis depuis le disque, mises à jour par delta vérifiées
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class TranslationCacheTest {
+
+    private MockLogiTrackServer server;
+    private TranslationCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockLogiTrackServer().start();
+        Map<String, String> ar = new HashMap<>();
+        ar.put("nav.tubes", "الأنابيب");
+        ar.put("nav.bobines", "اللفائف");
+        server.setTranslations("ar", ar);
+        cache = new TranslationCache(ApplicationProvider.getApplicationContext(), server.getUrl());
+    }
+
+    @After
+    public void tearDown() {
+        cache.stop();
+        server.stop();
+    }
+
+    @Test
+    public void computeVersion_matchesBackendHash() {
+        // Valeur calculée par backend/src/utils/translationBundles.js pour le même contenu
+        Map<String, String> values = new HashMap<>();
+        values.put("nav.b", "Bé");
+        values.put("nav.a", "ع");
+        values.put("Z", "x");
+        values.put("é", "1");
+        assertEquals("108d8a4704447b7a", TranslationCache.computeVersion(values));
+    }
+
+    @Test
+    public void firstLoad_fetchesFullBundle_thenServedFromDiskWithVersionCheck() throws Exception {
+        String url = server.getUrl() + "/api/langues/traductions/ar";
+
+        JSONObject first = TestUtils.readJson(cache.intercept(TestUtils.get(url)));
+        assertEquals("الأنابيب", first.getJSONObject("traductions").getString("nav.tubes"));
+        String version = first.getString("version");
+
+        // Nouvelle instance (redémarrage de l'app) : lecture disque, vérification en arrière-plan
+        TranslationCache restarted = new TranslationCache(ApplicationProvider.getApplicationContext(), server.getUrl());
+        JSONObject second = TestUtils.readJson(restarted.intercept(TestUtils.get(url)));
+        assertEquals(version, second.getString("version"));
+        TestUtils.waitFor("vérification de version", () -> server.getBundleRequests().size() == 2, 2000);
+        List<String> requests = server.getBundleRequests();
+        assertEquals("/api/langues/bundle/ar", requests.get(0));
+        assertEquals("/api/langues/bundle/ar?since=" + version, requests.get(1));
+        restarted.stop();
+    }
+
+    @Test
+    public void cachedBundle_isAvailableSynchronouslyForFirstRender() throws Exception {
+        assertEquals("", cache.getCachedBundleJson("ar"));
+        cache.refresh("ar");
+
+        JSONObject bundle = new JSONObject(cache.getCachedBundleJson("ar"));
+        assertEquals("اللفائف", bundle.getJSONObject("traductions").getString("nav.bobines"));
+    }
+
+    @Test
+    public void delta_isAppliedAndListenerNotified() throws Exception {
+        cache.refresh("ar");
+        String[] updated = new String[1];
+        cache.setListener(langue -> updated[0] = langue);
+
+        TranslationCache.Bundle current = cache.getBundle("ar");
+        Map<String, String> next = new HashMap<>(current.traductions);
+        next.put("nav.coulees", "الصبات");
+        next.remove("nav.bobines");
+        JSONObject delta = new JSONObject()
+            .put("version", TranslationCache.computeVersion(next))
+            .put("full", false)
+            .put("changes", new JSONObject().put("nav.coulees", "الصبات"))
+            .put("removed", new org.json.JSONArray().put("nav.bobines"));
+
+        TranslationCache.Bundle applied = TranslationCache.apply(current, delta);
+        assertEquals(next, applied.traductions);
+        assertEquals(applied.version, TranslationCache.computeVersion(applied.traductions));
+
+        // Côté serveur, la nouvelle version est publiée : la mise à jour notifie la page
+        server.setTranslations("ar", next);
+        assertNotNull(cache.refresh("ar"));
+        assertEquals("ar", updated[0]);
+        assertTrue(new JSONObject(cache.getCachedBundleJson("ar")).getJSONObject("traductions").has("nav.coulees"));
+    }
+
+    @Test
+    public void languesList_servedFromDiskFirst_thenRefreshedInBackground() throws Exception {
+        String url = server.getUrl() + "/api/langues";
+        assertTrue(TestUtils.readString(cache.intercept(TestUtils.get(url)).getData()).contains("\"fr\""));
+
+        // Serveur lent (ou arrêté) : la page ne doit pas attendre la liste
+        server.setLangues("{\"langues\":[{\"code\":\"fr\"},{\"code\":\"ar\",\"direction\":\"rtl\"}]}");
+        server.setMode(MockLogiTrackServer.Mode.SLOW);
+        server.setLatency(2000);
+        long start = System.nanoTime();
+        String second = TestUtils.readString(cache.intercept(TestUtils.get(url)).getData());
+        assertTrue("Liste non servie depuis le disque", (System.nanoTime() - start) / 1_000_000 < 1000);
+        assertFalse(second.contains("\"ar\""));
+
+        TestUtils.waitFor("liste rafraîchie en arrière-plan",
+            () -> cache.getCachedLanguesJson().contains("\"ar\""), 5000);
+    }
+}